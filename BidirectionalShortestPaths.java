@@ -0,0 +1,207 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/** Shortest paths between a source and a destination, found by
+ *  searching forward from the source (over successors) and backward from
+ *  the destination (over predecessors) at the same time.  The search
+ *  always expands the side with the smaller fringe, and stops once the
+ *  smallest weights on the two fringes add up to at least the length of
+ *  the best source-to-destination path seen so far.  On road networks,
+ *  the two searches settle roughly half as many vertices as one search
+ *  from the source.
+ *
+ *  Only pathTo() (or pathTo(getDest())) uses the two-way search.  After
+ *  it, getWeight and getPredecessor are valid for the vertices on the
+ *  path returned.  Requests for other vertices, or instances whose
+ *  searchBothWays method returns false, use the one-way search of
+ *  ShortestPaths, including any estimatedDistance the client supplies.
+ *  Once the two-way search is done, the weights and predecessors of the
+ *  path are copied out and the search's storage is released for reuse.
+ *  The client needs to supply only the two-argument getWeight method.
+ *  @author esun
+ */
+public abstract class BidirectionalShortestPaths extends SimpleShortestPaths {
+
+    /** A shortest path in G from SOURCE to DEST. */
+    public BidirectionalShortestPaths(Graph G, int source, int dest) {
+        super(G, source, dest);
+    }
+
+    @Override
+    public void setPaths() {
+        super.setPaths();
+        _onPath = null;
+        _initialized = true;
+        _path = null;
+    }
+
+    @Override
+    int doubleSlots() {
+        return 2;
+    }
+
+    /** Returns true iff pathTo(getDest()) should search from both ends.
+     *  This default implementation always returns true. */
+    protected boolean searchBothWays() {
+        return true;
+    }
+
+    @Override
+    public List<Integer> pathTo(int v) {
+        if (v != getDest() || getDest() == 0 || !searchBothWays()) {
+            if (_onPath != null) {
+                setPaths();
+            }
+            return super.pathTo(v);
+        }
+        if (!_initialized) {
+            setPaths();
+        }
+        if (_path == null) {
+            _path = search();
+            keepPath();
+        }
+        return _path.isEmpty() ? null : new LinkedList<>(_path);
+    }
+
+    /** Record the weights and predecessors of the vertices on _path, and
+     *  release the SearchSpace that held them and the rest of the
+     *  search's state, so that another search may reuse it. */
+    private void keepPath() {
+        _onPath = new HashMap<>();
+        _pathWeights = new double[_path.size()];
+        _pathPredecessors = new int[_path.size()];
+        int k = 0;
+        for (int v : _path) {
+            _onPath.put(v, k);
+            _pathWeights[k] = super.getWeight(v);
+            _pathPredecessors[k] = super.getPredecessor(v);
+            k += 1;
+        }
+        release();
+    }
+
+    @Override
+    public double getWeight(int v) {
+        if (_onPath == null) {
+            return super.getWeight(v);
+        }
+        Integer k = _onPath.get(v);
+        return k == null ? Double.POSITIVE_INFINITY : _pathWeights[k];
+    }
+
+    @Override
+    public int getPredecessor(int v) {
+        if (_onPath == null) {
+            return super.getPredecessor(v);
+        }
+        Integer k = _onPath.get(v);
+        return k == null ? 0 : _pathPredecessors[k];
+    }
+
+    /** Perform the two-way search, returning the shortest path from the
+     *  source to the destination, or an empty list if there is none.
+     *  Leaves the weights and predecessors of the vertices on the path
+     *  set. */
+    private List<Integer> search() {
+        int source = getSource(), dest = getDest();
+        SearchSpace space = space();
+        space.setDouble(BACK_WEIGHT, dest, 0.0);
+        SearchSpace positions =
+            SearchSpace.lease(this, _G.maxVertex() + 1, 0);
+        DaryHeap forward = new DaryHeap(positions, FORWARD),
+            backward = new DaryHeap(positions, BACKWARD);
+        forward.add(source, 0.0);
+        backward.add(dest, 0.0);
+        double best = source == dest ? 0.0 : Double.POSITIVE_INFINITY;
+        int meet = source == dest ? source : 0;
+
+        while (!forward.isEmpty() && !backward.isEmpty()
+               && forward.priority(forward.peekMin())
+                  + backward.priority(backward.peekMin()) < best) {
+            if (forward.size() <= backward.size()) {
+                int u = forward.removeMin();
+                double du = getWeight(u);
+                for (IntIteration it = _G.intSuccessors(u); it.hasNext(); ) {
+                    int w = it.nextInt();
+                    double d = du + getWeight(u, w);
+                    if (d < getWeight(w)) {
+                        setWeight(w, d);
+                        setPredecessor(w, u);
+                        forward.add(w, d);
+                    }
+                    double back = space.getDouble(BACK_WEIGHT, w);
+                    if (d + back < best) {
+                        best = d + back;
+                        meet = w;
+                    }
+                }
+            } else {
+                int x = backward.removeMin();
+                double dx = space.getDouble(BACK_WEIGHT, x);
+                for (IntIteration it = _G.intPredecessors(x); it.hasNext(); ) {
+                    int w = it.nextInt();
+                    double d = dx + getWeight(w, x);
+                    if (d < space.getDouble(BACK_WEIGHT, w)) {
+                        space.setDouble(BACK_WEIGHT, w, d);
+                        space.setInt(NEXT, w, x);
+                        backward.add(w, d);
+                    }
+                    if (getWeight(w) + d < best) {
+                        best = getWeight(w) + d;
+                        meet = w;
+                    }
+                }
+            }
+        }
+
+        positions.release();
+
+        LinkedList<Integer> path = new LinkedList<>();
+        if (meet == 0) {
+            return path;
+        }
+        for (int v = meet; v != source; v = getPredecessor(v)) {
+            path.addFirst(v);
+        }
+        path.addFirst(source);
+        for (int v = meet; v != dest; ) {
+            int w = space.getInt(NEXT, v);
+            setPredecessor(w, v);
+            setWeight(w, best - space.getDouble(BACK_WEIGHT, w));
+            path.addLast(w);
+            v = w;
+        }
+        return path;
+    }
+
+    /** Double slot of space() holding the weights of the shortest known
+     *  paths from each vertex to the destination. */
+    private static final int BACK_WEIGHT = 1;
+    /** Int slot of space() holding the vertex after each vertex on its
+     *  shortest known path to the destination. */
+    private static final int NEXT = 1;
+    /** Int slot of the search's position space holding positions in the
+     *  forward heap. */
+    private static final int FORWARD = 0;
+    /** Int slot of the search's position space holding positions in the
+     *  backward heap. */
+    private static final int BACKWARD = 1;
+    /** After a two-way search, the positions on _path of its vertices,
+     *  and otherwise null. */
+    private HashMap<Integer, Integer> _onPath;
+    /** The weights of the vertices on _path, by position. */
+    private double[] _pathWeights;
+    /** The predecessors of the vertices on _path, by position. */
+    private int[] _pathPredecessors;
+    /** True iff setPaths has been called. */
+    private boolean _initialized;
+    /** The result of the two-way search, or null if it has not been done
+     *  since the last setPaths. */
+    private List<Integer> _path;
+}
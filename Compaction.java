@@ -0,0 +1,28 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+/** Compaction of the edge ids of graphs.  A graph reuses the ids of
+ *  removed edges for new ones, so its edge storage follows the number
+ *  of live edges as long as edges come and go at about the same rate.
+ *  After many more removals than additions, a long-lived graph still
+ *  holds room for its largest id; compacting it renumbers its edges
+ *  densely and releases that room.
+ *  @author esun
+ */
+public class Compaction {
+
+    /** Not instantiable. */
+    private Compaction() {
+    }
+
+    /** Renumber the edges of G so that their ids run from 1 to
+     *  G.edgeSize() in their current relative order, and release the
+     *  space G holds for the ids of removed edges.  Edge labels kept by a
+     *  LabeledGraph are renumbered with them, and a GraphFilter compacts
+     *  the graph it filters.  Edge ids previously returned by G become
+     *  invalid. */
+    public static void compact(Graph G) {
+        G.compact();
+    }
+}
@@ -0,0 +1,623 @@
+package trip;
+
+import graph.Graph;
+import graph.IntIteration;
+import graph.Iteration;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.NoSuchElementException;
+
+import static trip.Main.error;
+
+/** A map in compiled binary form, read through a memory-mapped file so
+ *  that loading it takes nearly constant time: nothing is parsed or
+ *  copied until it is used.  The file consists of
+ *    + A header of HEADER_INTS ints: MAGIC, VERSION, the number of vertex
+ *      slots n (one more than the largest vertex), the number of
+ *      vertices, the number of edges, the number of road records, the
+ *      length of the adjacency arrays, the size of the name index, and
+ *      the size in bytes of the string pool.
+ *    + The vertex table: for each vertex number 0 .. n-1, the pool
+ *      offset of its name (-1 if there is no such vertex) and its x and
+ *      y coordinates, as VERTEX_BYTES bytes.
+ *    + The adjacency of each vertex in compressed-sparse-row form: n + 1
+ *      row starts, then the neighbor and the road record number of each
+ *      entry.  Rows are in the order of the original map's successors,
+ *      so searches visit vertices in the same order as for the text map.
+ *    + The road records: the pool offset of the road name, the ordinal of
+ *      its Direction, its starting vertex, and its length, as ROAD_BYTES
+ *      bytes.
+ *    + The name index: an open-addressing hash table of vertex numbers
+ *      (0 for an empty slot), probed linearly from the hash of the UTF-8
+ *      bytes of the name.
+ *    + The string pool: each distinct name once, as an int length followed
+ *      by its UTF-8 bytes.
+ *  All numbers are big-endian.
+ *  @author esun
+ */
+class CompiledMap {
+
+    /** Returns true iff the file named NAME starts like a compiled map. */
+    static boolean isCompiled(String name) {
+        try (DataInputStream inp =
+                 new DataInputStream(new FileInputStream(name))) {
+            return inp.readInt() == MAGIC;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Returns the compiled map in the file named NAME. */
+    static CompiledMap load(String name) {
+        try (FileChannel channel =
+                 FileChannel.open(new File(name).toPath(),
+                                  StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                error("compiled map %s is too large", name);
+            }
+            return new CompiledMap(
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException excp) {
+            error("could not read compiled map %s: %s", name,
+                  excp.getMessage());
+            return null;
+        }
+    }
+
+    /** A compiled map whose contents are DATA. */
+    private CompiledMap(MappedByteBuffer data) {
+        _data = data;
+        IntBuffer header = data.asIntBuffer();
+        if (data.capacity() < HEADER_INTS * Integer.BYTES
+            || header.get(0) != MAGIC || header.get(1) != VERSION) {
+            error("not a compiled map");
+        }
+        _n = header.get(2);
+        _vertexSize = header.get(3);
+        _edgeSize = header.get(4);
+        _roads = header.get(5);
+        int adjacent = header.get(6);
+        _indexSize = header.get(7);
+        int poolSize = header.get(8);
+        if (!sizesMatch(data.capacity(), adjacent, poolSize)) {
+            error("corrupt compiled map");
+        }
+
+        _vertexBase = HEADER_INTS * Integer.BYTES;
+        int startBase = _vertexBase + _n * VERTEX_BYTES;
+        _start = slice(startBase, _n + 1);
+        _target = slice(startBase + (_n + 1) * Integer.BYTES, adjacent);
+        _road = slice(startBase + (_n + 1 + adjacent) * Integer.BYTES,
+                      adjacent);
+        _roadBase = startBase + (_n + 1 + 2 * adjacent) * Integer.BYTES;
+        _index = slice(_roadBase + _roads * ROAD_BYTES, _indexSize);
+        _poolBase = _roadBase + _roads * ROAD_BYTES
+            + _indexSize * Integer.BYTES;
+    }
+
+    /** Returns true iff my header's sizes are consistent, given that
+     *  the adjacency arrays have ADJACENT entries and the string pool
+     *  POOLSIZE bytes, and they add up to CAPACITY, the length of the
+     *  file.  Computed in longs, so that no corrupt size can overflow
+     *  into a plausible one. */
+    private boolean sizesMatch(int capacity, int adjacent, int poolSize) {
+        if (_n < 1 || _vertexSize < 0 || _vertexSize >= _n || _edgeSize < 0
+            || _roads < 0 || adjacent < 0 || poolSize < 0
+            || _indexSize <= _vertexSize
+            || Integer.bitCount(_indexSize) != 1) {
+            return false;
+        }
+        long total = (long) HEADER_INTS * Integer.BYTES
+            + (long) _n * VERTEX_BYTES
+            + (_n + 1L + 2L * adjacent) * Integer.BYTES
+            + (long) _roads * ROAD_BYTES
+            + (long) _indexSize * Integer.BYTES + poolSize;
+        return total == capacity;
+    }
+
+    /** Returns an IntBuffer view of the LENGTH ints starting at byte
+     *  POSITION of my data. */
+    private IntBuffer slice(int position, int length) {
+        ByteBuffer view = _data.duplicate();
+        view.position(position);
+        view.limit(position + length * Integer.BYTES);
+        return view.slice().asIntBuffer();
+    }
+
+    /** Returns the vertex of the location named NAME, or 0 if there is
+     *  none. */
+    int find(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int mask = _indexSize - 1;
+        for (int i = hash(key) & mask; _index.get(i) != 0;
+             i = (i + 1) & mask) {
+            int v = _index.get(i);
+            if (nameEquals(_data.getInt(_vertexBase + v * VERTEX_BYTES),
+                           key)) {
+                return v;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns true iff the pool string at OFFSET has UTF-8 bytes KEY. */
+    private boolean nameEquals(int offset, byte[] key) {
+        int p = _poolBase + offset;
+        if (_data.getInt(p) != key.length) {
+            return false;
+        }
+        for (int k = 0; k < key.length; k += 1) {
+            if (_data.get(p + Integer.BYTES + k) != key[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the pool string at OFFSET. */
+    private String string(int offset) {
+        int p = _poolBase + offset;
+        byte[] bytes = new byte[_data.getInt(p)];
+        for (int k = 0; k < bytes.length; k += 1) {
+            bytes[k] = _data.get(p + Integer.BYTES + k);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the Location of vertex V. */
+    Location location(int v) {
+        int p = _vertexBase + v * VERTEX_BYTES;
+        return new Location(string(_data.getInt(p)),
+                            _data.getDouble(p + Integer.BYTES),
+                            _data.getDouble(p + Integer.BYTES
+                                            + Double.BYTES));
+    }
+
+    /** Returns the straight-line distance between vertices U and V. */
+    double dist(int u, int v) {
+        int p = _vertexBase + u * VERTEX_BYTES + Integer.BYTES,
+            q = _vertexBase + v * VERTEX_BYTES + Integer.BYTES;
+        double dx = _data.getDouble(p) - _data.getDouble(q),
+            dy = _data.getDouble(p + Double.BYTES)
+                - _data.getDouble(q + Double.BYTES);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /** Returns the number of the road record for the edge (U, V), or -1
+     *  if there is none. */
+    private int roadOf(int u, int v) {
+        if (u <= 0 || u >= _n) {
+            return -1;
+        }
+        for (int k = _start.get(u); k < _start.get(u + 1); k += 1) {
+            if (_target.get(k) == v) {
+                return _road.get(k);
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the position in my data of the road record for the edge
+     *  (U, V), which must exist. */
+    private int roadRecord(int u, int v) {
+        int r = roadOf(u, v);
+        if (r == -1) {
+            error("no road between vertices %d and %d", u, v);
+        }
+        return _roadBase + r * ROAD_BYTES;
+    }
+
+    /** Returns the Road between U and V. */
+    Road road(int u, int v) {
+        int p = roadRecord(u, v);
+        return new Road(string(_data.getInt(p)),
+                        Direction.values()[_data.getInt(p + Integer.BYTES)],
+                        _data.getDouble(p + 3 * Integer.BYTES));
+    }
+
+    /** Returns the vertex at which the road between U and V starts. */
+    int roadStart(int u, int v) {
+        return _data.getInt(roadRecord(u, v) + 2 * Integer.BYTES);
+    }
+
+    /** Returns the length of the road between U and V. */
+    double roadLength(int u, int v) {
+        return _data.getDouble(roadRecord(u, v) + 3 * Integer.BYTES);
+    }
+
+    /** Returns a read-only undirected Graph whose vertices and edges are
+     *  those of my map, backed by my adjacency arrays. */
+    Graph graph() {
+        return _graph;
+    }
+
+    /** The Graph returned by graph().  Its vertex and neighbor iterations
+     *  are IntIterations, which the searches of the graph package use
+     *  without boxing. */
+    private class MappedGraph extends Graph {
+
+        @Override
+        public int vertexSize() {
+            return _vertexSize;
+        }
+
+        @Override
+        public int maxVertex() {
+            return _n - 1;
+        }
+
+        @Override
+        public int edgeSize() {
+            return _edgeSize;
+        }
+
+        @Override
+        public boolean isDirected() {
+            return false;
+        }
+
+        @Override
+        public int outDegree(int v) {
+            return contains(v) ? _start.get(v + 1) - _start.get(v) : 0;
+        }
+
+        @Override
+        public int inDegree(int v) {
+            return outDegree(v);
+        }
+
+        @Override
+        public boolean contains(int u) {
+            return u > 0 && u < _n
+                && _data.getInt(_vertexBase + u * VERTEX_BYTES) != -1;
+        }
+
+        @Override
+        public boolean contains(int u, int v) {
+            return contains(u) && roadOf(u, v) != -1;
+        }
+
+        @Override
+        public int add() {
+            throw new UnsupportedOperationException("map is compiled");
+        }
+
+        @Override
+        public int add(int u, int v) {
+            throw new UnsupportedOperationException("map is compiled");
+        }
+
+        @Override
+        public void remove(int v) {
+            throw new UnsupportedOperationException("map is compiled");
+        }
+
+        @Override
+        public void remove(int u, int v) {
+            throw new UnsupportedOperationException("map is compiled");
+        }
+
+        @Override
+        public Iteration<Integer> vertices() {
+            return new IntIteration() {
+                @Override
+                public boolean hasNext() {
+                    while (_v < _n && !contains(_v)) {
+                        _v += 1;
+                    }
+                    return _v < _n;
+                }
+
+                @Override
+                public int nextInt() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    _v += 1;
+                    return _v - 1;
+                }
+
+                /** Next vertex number to examine. */
+                private int _v = 1;
+            };
+        }
+
+        @Override
+        public Iteration<Integer> successors(int v) {
+            int start = contains(v) ? _start.get(v) : 0,
+                end = contains(v) ? _start.get(v + 1) : 0;
+            return new IntIteration() {
+                @Override
+                public boolean hasNext() {
+                    return _k < end;
+                }
+
+                @Override
+                public int nextInt() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    _k += 1;
+                    return _target.get(_k - 1);
+                }
+
+                /** Index in _target of the next neighbor. */
+                private int _k = start;
+            };
+        }
+
+        @Override
+        public Iteration<Integer> predecessors(int v) {
+            return successors(v);
+        }
+
+        @Override
+        public Iteration<int[]> edges() {
+            return new Iteration<int[]>() {
+                @Override
+                public boolean hasNext() {
+                    while (_k < _target.capacity()) {
+                        while (_k >= _start.get(_u + 1)) {
+                            _u += 1;
+                        }
+                        if (_u <= _target.get(_k)) {
+                            return true;
+                        }
+                        _k += 1;
+                    }
+                    return false;
+                }
+
+                @Override
+                public int[] next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    _edge[0] = _u;
+                    _edge[1] = _target.get(_k);
+                    _k += 1;
+                    return _edge;
+                }
+
+                /** Current vertex. */
+                private int _u;
+                /** Index in _target of the next edge to examine. */
+                private int _k;
+                /** Array used to return each edge. */
+                private final int[] _edge = new int[2];
+            };
+        }
+
+        @Override
+        protected int edgeId(int u, int v) {
+            return contains(u) ? roadOf(u, v) + 1 : 0;
+        }
+    }
+
+    /** Accumulates the contents of a map and writes them in compiled
+     *  form.  Locations may be given in any order, but edges must be
+     *  given row by row: all the edges from each vertex, in order, before
+     *  any from a higher-numbered vertex. */
+    static class Compiler {
+
+        /** A compiler for a map whose largest vertex is MAXVERTEX, with
+         *  EDGESIZE edges. */
+        Compiler(int maxVertex, int edgeSize) {
+            _n = maxVertex + 1;
+            _edgeSize = edgeSize;
+            _names = new int[_n];
+            Arrays.fill(_names, -1);
+            _xs = new double[_n];
+            _ys = new double[_n];
+            _start = new int[_n + 1];
+        }
+
+        /** Record that vertex V is the location named NAME at (X, Y). */
+        void location(int v, String name, double x, double y)
+            throws IOException {
+            if (_names[v] == -1) {
+                _vertexSize += 1;
+            }
+            _names[v] = intern(name);
+            _xs[v] = x;
+            _ys[v] = y;
+        }
+
+        /** Record an edge from U to V along ROAD, which starts at vertex
+         *  START. */
+        void edge(int u, int v, Road road, int start) throws IOException {
+            for (int w = _row + 1; w <= u; w += 1) {
+                _start[w] = _adjacent;
+            }
+            _row = Math.max(_row, u);
+            Integer r = _roadNumbers.get(road);
+            if (r == null) {
+                r = _roadNumbers.size();
+                _roadNumbers.put(road, r);
+                _roadData.writeInt(intern(road.toString()));
+                _roadData.writeInt(road.direction().ordinal());
+                _roadData.writeInt(start);
+                _roadData.writeDouble(road.length());
+            }
+            _targetData.writeInt(v);
+            _roadIdData.writeInt(r);
+            _adjacent += 1;
+        }
+
+        /** Returns the pool offset of NAME, adding it if needed. */
+        private int intern(String name) throws IOException {
+            Integer offset = _pool.get(name);
+            if (offset == null) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                offset = _poolData.size();
+                _poolData.writeInt(bytes.length);
+                _poolData.write(bytes, 0, bytes.length);
+                _pool.put(name, offset);
+            }
+            return offset;
+        }
+
+        /** Write the compiled map to the file named NAME. */
+        void write(String name) throws IOException {
+            for (int w = _row + 1; w <= _n; w += 1) {
+                _start[w] = _adjacent;
+            }
+            byte[] pool = _poolBytes.toByteArray();
+            int indexSize = 2;
+            while (indexSize < 2 * _vertexSize) {
+                indexSize *= 2;
+            }
+            int[] index = new int[indexSize];
+            for (int v = 1; v < _n; v += 1) {
+                if (_names[v] != -1) {
+                    byte[] key = Arrays.copyOfRange(pool,
+                                                    _names[v] + Integer.BYTES,
+                                                    _names[v] + Integer.BYTES
+                                                    + nameLength(pool, v));
+                    int i = hash(key) & (indexSize - 1);
+                    while (index[i] != 0) {
+                        i = (i + 1) & (indexSize - 1);
+                    }
+                    index[i] = v;
+                }
+            }
+
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(name)))) {
+                int[] header = { MAGIC, VERSION, _n, _vertexSize, _edgeSize,
+                                 _roadNumbers.size(), _adjacent,
+                                 indexSize, pool.length };
+                for (int x : header) {
+                    out.writeInt(x);
+                }
+                for (int v = 0; v < _n; v += 1) {
+                    out.writeInt(_names[v]);
+                    out.writeDouble(_xs[v]);
+                    out.writeDouble(_ys[v]);
+                }
+                for (int x : _start) {
+                    out.writeInt(x);
+                }
+                _targetBytes.writeTo(out);
+                _roadIdBytes.writeTo(out);
+                _roadBytes.writeTo(out);
+                for (int x : index) {
+                    out.writeInt(x);
+                }
+                out.write(pool);
+            }
+        }
+
+        /** Returns the length of the name of vertex V in POOL. */
+        private int nameLength(byte[] pool, int v) {
+            return ByteBuffer.wrap(pool, _names[v], Integer.BYTES).getInt();
+        }
+
+        /** One more than the largest vertex. */
+        private final int _n;
+        /** Number of edges. */
+        private final int _edgeSize;
+        /** Number of vertices. */
+        private int _vertexSize;
+        /** Pool offsets of vertex names, or -1 for non-vertices. */
+        private final int[] _names;
+        /** Vertex coordinates. */
+        private final double[] _xs, _ys;
+        /** Row starts of the adjacency arrays. */
+        private final int[] _start;
+        /** The highest row for which edges have been given (0 if none). */
+        private int _row;
+        /** Number of adjacency entries given so far. */
+        private int _adjacent;
+        /** Neighbors, row by row. */
+        private final ByteArrayOutputStream _targetBytes =
+            new ByteArrayOutputStream();
+        /** Writes _targetBytes. */
+        private final DataOutputStream _targetData =
+            new DataOutputStream(_targetBytes);
+        /** Road record numbers parallel to the neighbors. */
+        private final ByteArrayOutputStream _roadIdBytes =
+            new ByteArrayOutputStream();
+        /** Writes _roadIdBytes. */
+        private final DataOutputStream _roadIdData =
+            new DataOutputStream(_roadIdBytes);
+        /** Road record numbers of the Roads given so far. */
+        private final IdentityHashMap<Road, Integer> _roadNumbers =
+            new IdentityHashMap<>();
+        /** Pool offsets of the names given so far. */
+        private final HashMap<String, Integer> _pool = new HashMap<>();
+        /** Contents of the string pool. */
+        private final ByteArrayOutputStream _poolBytes =
+            new ByteArrayOutputStream();
+        /** Writes _poolBytes. */
+        private final DataOutputStream _poolData =
+            new DataOutputStream(_poolBytes);
+        /** Contents of the road records. */
+        private final ByteArrayOutputStream _roadBytes =
+            new ByteArrayOutputStream();
+        /** Writes _roadBytes. */
+        private final DataOutputStream _roadData =
+            new DataOutputStream(_roadBytes);
+    }
+
+    /** Returns the hash of the name whose UTF-8 bytes are KEY (FNV-1a). */
+    private static int hash(byte[] key) {
+        int h = 0x811c9dc5;
+        for (byte b : key) {
+            h = (h ^ (b & 0xff)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** Identifies a compiled map. */
+    static final int MAGIC = 0x54524950;
+    /** Version of the compiled format. */
+    private static final int VERSION = 1;
+    /** Number of ints in the header. */
+    private static final int HEADER_INTS = 9;
+    /** Size of a vertex table entry. */
+    private static final int VERTEX_BYTES = Integer.BYTES + 2 * Double.BYTES;
+    /** Size of a road record. */
+    private static final int ROAD_BYTES = 3 * Integer.BYTES + Double.BYTES;
+
+    /** The mapped file. */
+    private final ByteBuffer _data;
+    /** Number of vertex slots. */
+    private final int _n;
+    /** Number of vertices. */
+    private final int _vertexSize;
+    /** Number of edges. */
+    private final int _edgeSize;
+    /** Number of road records. */
+    private final int _roads;
+    /** Size of the name index. */
+    private final int _indexSize;
+    /** Byte offsets of the vertex table, road records, and string pool. */
+    private final int _vertexBase, _roadBase, _poolBase;
+    /** Adjacency row starts. */
+    private final IntBuffer _start;
+    /** Neighbors, row by row. */
+    private final IntBuffer _target;
+    /** Road record numbers parallel to _target. */
+    private final IntBuffer _road;
+    /** The name index. */
+    private final IntBuffer _index;
+    /** The graph of my map. */
+    private final MappedGraph _graph = new MappedGraph();
+}
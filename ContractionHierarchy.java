@@ -0,0 +1,739 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/** A contraction hierarchy over a weighted Graph, for fast shortest-path
+ *  queries between pairs of vertices.
+ *
+ *  Preprocessing contracts the vertices one at a time, in an order
+ *  chosen greedily by edge difference (the number of shortcuts that
+ *  contracting a vertex would add, less the number of edges it would
+ *  remove) plus the number of its neighbors already contracted.
+ *  Contracting v adds a shortcut (u, w) whose weight is that of the path
+ *  u, v, w, unless a local witness search finds a path from u to w that
+ *  avoids v and is no longer.  Priorities are recomputed lazily, when a
+ *  vertex reaches the front of the order.  A vertex's rank is its
+ *  position in this order.  On graphs with many long-range edges, the
+ *  last vertices to be contracted become densely connected; once the
+ *  remaining graph's average degree exceeds CORE_DEGREE, contraction
+ *  stops and the remaining vertices form a "core" that share the top
+ *  rank, and whose edges are all kept in both directions.
+ *
+ *  For each vertex v, the hierarchy keeps the "upward" edges leaving v
+ *  toward higher-ranked vertices (the _fwd arrays) and the upward edges
+ *  entering v from higher-ranked vertices (the _bwd arrays), in
+ *  compressed-sparse-row form.  Each edge records the contracted vertex
+ *  it bypasses, or 0 for an original edge.  A query searches upward from
+ *  the source over _fwd and upward from the destination over _bwd, and
+ *  the best meeting vertex gives the shortest path (within the core, the
+ *  two searches act as an ordinary two-way search), whose shortcuts are
+ *  then unpacked back into the original vertices.
+ *
+ *  A hierarchy is immutable once built and may be written to and read
+ *  back from a stream.  Queries may run concurrently; each thread uses
+ *  its own search state.
+ *  @author esun
+ */
+public class ContractionHierarchy {
+
+    /** A hierarchy for G, whose edge weights are given by WEIGHTS.  G must
+     *  not change while the hierarchy is being built. */
+    public ContractionHierarchy(Graph G, EdgeWeighting weights) {
+        _n = G.maxVertex() + 1;
+        _fingerprint = Fingerprint.of(G, weights);
+        Contractor c = new Contractor(G, weights);
+        c.contractAll();
+        _rank = c._rank;
+        _fwdStart = new int[_n + 1];
+        _bwdStart = new int[_n + 1];
+        for (int v = 1; v < _n; v += 1) {
+            _fwdStart[v + 1] = _fwdStart[v] + c.upSize(c._upOut[v]);
+            _bwdStart[v + 1] = _bwdStart[v] + c.upSize(c._upIn[v]);
+        }
+        _fwdTarget = new int[_fwdStart[_n]];
+        _fwdWeight = new double[_fwdStart[_n]];
+        _fwdMid = new int[_fwdStart[_n]];
+        _bwdTarget = new int[_bwdStart[_n]];
+        _bwdWeight = new double[_bwdStart[_n]];
+        _bwdMid = new int[_bwdStart[_n]];
+        for (int v = 1; v < _n; v += 1) {
+            c.copyUp(c._upOut[v], _fwdStart[v],
+                     _fwdTarget, _fwdWeight, _fwdMid);
+            c.copyUp(c._upIn[v], _bwdStart[v],
+                     _bwdTarget, _bwdWeight, _bwdMid);
+        }
+    }
+
+    /** A hierarchy made of previously computed parts. */
+    private ContractionHierarchy(int n, long fingerprint,
+                                 int[] rank, int[] fwdStart, int[] fwdTarget,
+                                 double[] fwdWeight, int[] fwdMid,
+                                 int[] bwdStart, int[] bwdTarget,
+                                 double[] bwdWeight, int[] bwdMid) {
+        _n = n;
+        _fingerprint = fingerprint;
+        _rank = rank;
+        _fwdStart = fwdStart;
+        _fwdTarget = fwdTarget;
+        _fwdWeight = fwdWeight;
+        _fwdMid = fwdMid;
+        _bwdStart = bwdStart;
+        _bwdTarget = bwdTarget;
+        _bwdWeight = bwdWeight;
+        _bwdMid = bwdMid;
+    }
+
+    /** Returns true iff I was built from G with edge weights WEIGHTS:
+     *  that is, G has the maximum vertex of the graph I was built from,
+     *  and G and WEIGHTS have its fingerprint, which covers its edges, in
+     *  order, and their weights. */
+    public boolean matches(Graph G, EdgeWeighting weights) {
+        return G.maxVertex() + 1 == _n
+            && Fingerprint.of(G, weights) == _fingerprint;
+    }
+
+    /** Returns the number of shortcut edges I added to the original
+     *  graph. */
+    public int shortcuts() {
+        int count = 0;
+        for (int mid : _fwdMid) {
+            count += mid == 0 ? 0 : 1;
+        }
+        for (int mid : _bwdMid) {
+            count += mid == 0 ? 0 : 1;
+        }
+        return count;
+    }
+
+    /** Returns the weight of a shortest path from SOURCE to DEST, or
+     *  positive infinity if there is none. */
+    public double distance(int source, int dest) {
+        Query q = _queries.get();
+        q.search(source, dest);
+        return q._best;
+    }
+
+    /** Returns a list of the vertices on a shortest path from SOURCE to
+     *  DEST, starting with SOURCE and ending with DEST, or null if there
+     *  is no such path. */
+    public List<Integer> path(int source, int dest) {
+        Query q = _queries.get();
+        q.search(source, dest);
+        if (q._meet == 0) {
+            return null;
+        }
+        IntList upward = new IntList();
+        for (int v = q._meet; v != source; v = q._fwdPred[v]) {
+            upward.add(v);
+        }
+        LinkedList<Integer> result = new LinkedList<>();
+        result.add(source);
+        int v = source;
+        for (int k = upward.size() - 1; k >= 0; k -= 1) {
+            unpack(v, upward.get(k), result);
+            v = upward.get(k);
+        }
+        while (v != dest) {
+            int w = q._bwdPred[v];
+            unpack(v, w, result);
+            v = w;
+        }
+        return result;
+    }
+
+    /** Append to PATH the original vertices after U on the edge or
+     *  shortcut (U, V), ending with V. */
+    private void unpack(int u, int v, List<Integer> path) {
+        IntList pending = new IntList();
+        pending.add(v);
+        while (pending.size() > 0) {
+            int w = pending.get(pending.size() - 1);
+            int mid = middle(u, w);
+            if (mid == 0) {
+                path.add(w);
+                u = w;
+                pending.removeAt(pending.size() - 1);
+            } else {
+                pending.add(mid);
+            }
+        }
+    }
+
+    /** Returns the vertex bypassed by my edge (U, V), or 0 if it is an
+     *  original edge. */
+    private int middle(int u, int v) {
+        if (_rank[u] < _rank[v]) {
+            for (int k = _fwdStart[u]; k < _fwdStart[u + 1]; k += 1) {
+                if (_fwdTarget[k] == v) {
+                    return _fwdMid[k];
+                }
+            }
+        } else {
+            for (int k = _bwdStart[v]; k < _bwdStart[v + 1]; k += 1) {
+                if (_bwdTarget[k] == u) {
+                    return _bwdMid[k];
+                }
+            }
+        }
+        throw new IllegalStateException("missing hierarchy edge");
+    }
+
+    /** Write me to OUT in a form that read can reconstruct. */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(_n);
+        out.writeLong(_fingerprint);
+        writeInts(out, _rank);
+        writeInts(out, _fwdStart);
+        writeInts(out, _fwdTarget);
+        writeDoubles(out, _fwdWeight);
+        writeInts(out, _fwdMid);
+        writeInts(out, _bwdStart);
+        writeInts(out, _bwdTarget);
+        writeDoubles(out, _bwdWeight);
+        writeInts(out, _bwdMid);
+        out.flush();
+    }
+
+    /** Returns a hierarchy read from IN, as written by write.  Throws
+     *  IOException if IN does not hold a well-formed hierarchy, with every
+     *  vertex it mentions within range. */
+    public static ContractionHierarchy read(DataInputStream in)
+        throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a contraction hierarchy");
+        }
+        int n = in.readInt();
+        long fingerprint = in.readLong();
+        int[] rank = readInts(in);
+        int[] fwdStart = readInts(in), fwdTarget = readInts(in);
+        double[] fwdWeight = readDoubles(in);
+        int[] fwdMid = readInts(in);
+        int[] bwdStart = readInts(in), bwdTarget = readInts(in);
+        double[] bwdWeight = readDoubles(in);
+        int[] bwdMid = readInts(in);
+        if (n < 1 || rank.length != n
+            || !wellFormed(n, fwdStart, fwdTarget, fwdWeight, fwdMid)
+            || !wellFormed(n, bwdStart, bwdTarget, bwdWeight, bwdMid)) {
+            throw new IOException("corrupt contraction hierarchy");
+        }
+        for (int r : rank) {
+            if (r < -1) {
+                throw new IOException("corrupt contraction hierarchy");
+            }
+        }
+        return new ContractionHierarchy(n, fingerprint, rank,
+                                        fwdStart, fwdTarget, fwdWeight,
+                                        fwdMid, bwdStart, bwdTarget,
+                                        bwdWeight, bwdMid);
+    }
+
+    /** Returns true iff START, TARGET, WEIGHT, and MID, as read for a
+     *  hierarchy of N vertex numbers, form valid compressed-sparse-row
+     *  edge lists: START has N + 1 non-decreasing offsets from 0 to the
+     *  common length of the others, every TARGET is a vertex number in
+     *  [1 .. N), every MID is 0 or such a vertex number, and every WEIGHT
+     *  is non-negative. */
+    private static boolean wellFormed(int n, int[] start, int[] target,
+                                      double[] weight, int[] mid) {
+        if (start.length != n + 1 || start[0] != 0
+            || start[n] != target.length || weight.length != target.length
+            || mid.length != target.length) {
+            return false;
+        }
+        for (int v = 0; v < n; v += 1) {
+            if (start[v] > start[v + 1]) {
+                return false;
+            }
+        }
+        for (int k = 0; k < target.length; k += 1) {
+            if (target[k] < 1 || target[k] >= n || mid[k] < 0
+                || mid[k] >= n || !(weight[k] >= 0.0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write the length of A and then its elements to OUT. */
+    private static void writeInts(DataOutputStream out, int[] a)
+        throws IOException {
+        out.writeInt(a.length);
+        for (int x : a) {
+            out.writeInt(x);
+        }
+    }
+
+    /** Write the length of A and then its elements to OUT. */
+    private static void writeDoubles(DataOutputStream out, double[] a)
+        throws IOException {
+        out.writeInt(a.length);
+        for (double x : a) {
+            out.writeDouble(x);
+        }
+    }
+
+    /** Returns an array length read from IN, throwing IOException if it
+     *  is negative. */
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("corrupt contraction hierarchy");
+        }
+        return length;
+    }
+
+    /** Returns an array read from IN, as written by writeInts. */
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] a = new int[readLength(in)];
+        for (int k = 0; k < a.length; k += 1) {
+            a[k] = in.readInt();
+        }
+        return a;
+    }
+
+    /** Returns an array read from IN, as written by writeDoubles. */
+    private static double[] readDoubles(DataInputStream in)
+        throws IOException {
+        double[] a = new double[readLength(in)];
+        for (int k = 0; k < a.length; k += 1) {
+            a[k] = in.readDouble();
+        }
+        return a;
+    }
+
+    /** The state of one query.  Distances are reset through the list of
+     *  vertices each search touches, so a query costs time proportional
+     *  to the part of the hierarchy it explores. */
+    private class Query {
+
+        /** State for a hierarchy of my size. */
+        Query() {
+            _fwdDist = new double[_n];
+            _bwdDist = new double[_n];
+            Arrays.fill(_fwdDist, Double.POSITIVE_INFINITY);
+            Arrays.fill(_bwdDist, Double.POSITIVE_INFINITY);
+            _fwdPred = new int[_n];
+            _bwdPred = new int[_n];
+        }
+
+        /** Find a shortest path from SOURCE to DEST, setting _best to its
+         *  weight and _meet to its highest-ranked vertex (0 if there is no
+         *  path). */
+        void search(int source, int dest) {
+            for (int k = 0; k < _touched.size(); k += 1) {
+                int v = _touched.get(k);
+                _fwdDist[v] = _bwdDist[v] = Double.POSITIVE_INFINITY;
+            }
+            _touched.clear();
+            _forward.clear();
+            _backward.clear();
+            _best = Double.POSITIVE_INFINITY;
+            _meet = 0;
+            if (source <= 0 || source >= _n || _rank[source] < 0
+                || dest <= 0 || dest >= _n || _rank[dest] < 0) {
+                return;
+            }
+            reach(source, 0.0, 0, true);
+            reach(dest, 0.0, 0, false);
+            while (true) {
+                boolean fwd = !_forward.isEmpty()
+                    && _forward.priority(_forward.peekMin()) < _best;
+                boolean bwd = !_backward.isEmpty()
+                    && _backward.priority(_backward.peekMin()) < _best;
+                if (fwd && (!bwd || _forward.size() <= _backward.size())) {
+                    settle(_forward.removeMin(), true);
+                } else if (bwd) {
+                    settle(_backward.removeMin(), false);
+                } else {
+                    break;
+                }
+            }
+        }
+
+        /** Settle V in the forward search if FORWARD, and otherwise in the
+         *  backward search, relaxing its upward edges. */
+        private void settle(int v, boolean forward) {
+            double d = forward ? _fwdDist[v] : _bwdDist[v];
+            if (_fwdDist[v] + _bwdDist[v] < _best) {
+                _best = _fwdDist[v] + _bwdDist[v];
+                _meet = v;
+            }
+            int[] start = forward ? _fwdStart : _bwdStart;
+            int[] target = forward ? _fwdTarget : _bwdTarget;
+            double[] weight = forward ? _fwdWeight : _bwdWeight;
+            for (int k = start[v]; k < start[v + 1]; k += 1) {
+                reach(target[k], d + weight[k], v, forward);
+            }
+        }
+
+        /** Record that W is reachable at distance D through PRED in the
+         *  forward search if FORWARD, and otherwise in the backward
+         *  search, if that improves on its current distance. */
+        private void reach(int w, double d, int pred, boolean forward) {
+            double[] dist = forward ? _fwdDist : _bwdDist;
+            if (d < dist[w]) {
+                if (_fwdDist[w] == Double.POSITIVE_INFINITY
+                    && _bwdDist[w] == Double.POSITIVE_INFINITY) {
+                    _touched.add(w);
+                }
+                dist[w] = d;
+                (forward ? _fwdPred : _bwdPred)[w] = pred;
+                (forward ? _forward : _backward).add(w, d);
+            }
+        }
+
+        /** Distances from the source, upward. */
+        private final double[] _fwdDist;
+        /** Distances to the destination, upward in reverse. */
+        private final double[] _bwdDist;
+        /** Predecessors in the forward search. */
+        private final int[] _fwdPred;
+        /** Successors toward the destination in the backward search. */
+        private final int[] _bwdPred;
+        /** Vertices whose distances are not infinite. */
+        private final IntList _touched = new IntList();
+        /** Forward fringe. */
+        private final DaryHeap _forward = new DaryHeap();
+        /** Backward fringe. */
+        private final DaryHeap _backward = new DaryHeap();
+        /** Weight of the best path found. */
+        private double _best;
+        /** Meeting vertex of the best path found, or 0. */
+        private int _meet;
+    }
+
+    /** The working state of preprocessing: the remaining graph, with
+     *  shortcuts, over the vertices not yet contracted. */
+    private static class Contractor {
+
+        /** Preprocessing state for G with weights WEIGHTS. */
+        Contractor(Graph G, EdgeWeighting weights) {
+            _G = G;
+            int n = G.maxVertex() + 1;
+            _out = new Adjacency[n];
+            _in = new Adjacency[n];
+            _upOut = new Adjacency[n];
+            _upIn = new Adjacency[n];
+            _rank = new int[n];
+            _deleted = new int[n];
+            Arrays.fill(_rank, -1);
+            for (int v = 1; v < n; v += 1) {
+                if (G.contains(v)) {
+                    _out[v] = new Adjacency();
+                    _in[v] = new Adjacency();
+                }
+            }
+            for (int u = 1; u < n; u += 1) {
+                for (IntIteration it = G.intSuccessors(u); it.hasNext(); ) {
+                    int v = it.nextInt();
+                    if (u != v) {
+                        double w = weights.getWeight(u, v);
+                        if (_out[u].put(v, w, 0)) {
+                            _arcs += 1;
+                        }
+                        _in[v].put(u, w, 0);
+                    }
+                }
+            }
+            _dist = new double[n];
+            Arrays.fill(_dist, Double.POSITIVE_INFINITY);
+            _target = new int[n];
+        }
+
+        /** Contract every vertex outside the core, setting _rank, _upOut,
+         *  and _upIn for all vertices. */
+        void contractAll() {
+            DaryHeap order = new DaryHeap();
+            for (IntIteration it = _G.intVertices(); it.hasNext(); ) {
+                int v = it.nextInt();
+                order.add(v, priority(v));
+            }
+            int rank = 0;
+            while (!order.isEmpty()) {
+                if (_arcs > CORE_DEGREE * order.size()) {
+                    while (!order.isEmpty()) {
+                        int v = order.removeMin();
+                        _rank[v] = rank;
+                        _upOut[v] = _out[v];
+                        _upIn[v] = _in[v];
+                    }
+                    break;
+                }
+                int v = order.removeMin();
+                double p = priority(v);
+                if (!order.isEmpty()
+                    && p > order.priority(order.peekMin())) {
+                    order.add(v, p);
+                    continue;
+                }
+                _rank[v] = rank;
+                rank += 1;
+                contract(v);
+            }
+        }
+
+        /** Returns the contraction priority of V: its edge difference plus
+         *  the number of its neighbors already contracted. */
+        private double priority(int v) {
+            return shortcuts(v, false) - _out[v]._size - _in[v]._size
+                + _deleted[v];
+        }
+
+        /** Contract V: record its remaining edges as its upward edges, add
+         *  the shortcuts it needs, and remove it from the remaining
+         *  graph. */
+        private void contract(int v) {
+            _upOut[v] = _out[v];
+            _upIn[v] = _in[v];
+            shortcuts(v, true);
+            _arcs -= _upIn[v]._size + _upOut[v]._size;
+            for (int k = 0; k < _upIn[v]._size; k += 1) {
+                int u = _upIn[v]._nbr[k];
+                _out[u].remove(v);
+                _deleted[u] += 1;
+            }
+            for (int k = 0; k < _upOut[v]._size; k += 1) {
+                int w = _upOut[v]._nbr[k];
+                _in[w].remove(v);
+                _deleted[w] += 1;
+            }
+            _out[v] = _in[v] = null;
+        }
+
+        /** Returns the number of shortcuts needed to contract V, adding
+         *  them to the remaining graph iff ADD.  When only counting, the
+         *  witness searches are cut shorter, which may overestimate the
+         *  count but never misses a needed shortcut when adding. */
+        private int shortcuts(int v, boolean add) {
+            int count = 0;
+            Adjacency in = _in[v], out = _out[v];
+            int settleLimit =
+                add ? CONTRACT_SETTLE_LIMIT : SIMULATE_SETTLE_LIMIT;
+            for (int i = 0; i < in._size; i += 1) {
+                int u = in._nbr[i];
+                double a = in._weight[i];
+                double limit = Double.NEGATIVE_INFINITY;
+                for (int j = 0; j < out._size; j += 1) {
+                    if (out._nbr[j] != u) {
+                        limit = Math.max(limit, a + out._weight[j]);
+                    }
+                }
+                if (limit == Double.NEGATIVE_INFINITY) {
+                    continue;
+                }
+                witnessSearch(u, v, limit, settleLimit);
+                for (int j = 0; j < out._size; j += 1) {
+                    int w = out._nbr[j];
+                    double d = a + out._weight[j];
+                    if (w != u && _dist[w] > d) {
+                        count += 1;
+                        if (add) {
+                            if (_out[u].put(w, d, v)) {
+                                _arcs += 1;
+                            }
+                            _in[w].put(u, d, v);
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        /** Set _dist to the distances from U in the remaining graph
+         *  without V, as far as LIMIT and settling SETTLELIMIT vertices
+         *  allow, stopping early once every successor of V is settled.
+         *  Distances not found are left infinite or too large. */
+        private void witnessSearch(int u, int v, double limit,
+                                   int settleLimit) {
+            _stamp += 1;
+            int targets = 0;
+            Adjacency out = _out[v];
+            for (int j = 0; j < out._size; j += 1) {
+                if (out._nbr[j] != u) {
+                    _target[out._nbr[j]] = _stamp;
+                    targets += 1;
+                }
+            }
+            for (int k = 0; k < _touched.size(); k += 1) {
+                _dist[_touched.get(k)] = Double.POSITIVE_INFINITY;
+            }
+            _touched.clear();
+            _fringe.clear();
+            _dist[u] = 0.0;
+            _touched.add(u);
+            _fringe.add(u, 0.0);
+            int settled = 0;
+            while (!_fringe.isEmpty() && settled < settleLimit
+                   && targets > 0) {
+                int x = _fringe.removeMin();
+                settled += 1;
+                if (_dist[x] > limit) {
+                    break;
+                }
+                if (_target[x] == _stamp) {
+                    targets -= 1;
+                }
+                Adjacency adj = _out[x];
+                for (int k = 0; k < adj._size; k += 1) {
+                    int y = adj._nbr[k];
+                    double d = _dist[x] + adj._weight[k];
+                    if (y != v && d < _dist[y]) {
+                        if (_dist[y] == Double.POSITIVE_INFINITY) {
+                            _touched.add(y);
+                        }
+                        _dist[y] = d;
+                        _fringe.add(y, d);
+                    }
+                }
+            }
+        }
+
+        /** Returns the number of entries in ADJ. */
+        int upSize(Adjacency adj) {
+            return adj == null ? 0 : adj._size;
+        }
+
+        /** Copy the entries of ADJ into TARGET, WEIGHT, and MID, starting
+         *  at index START. */
+        void copyUp(Adjacency adj, int start,
+                    int[] target, double[] weight, int[] mid) {
+            for (int k = 0; k < upSize(adj); k += 1) {
+                target[start + k] = adj._nbr[k];
+                weight[start + k] = adj._weight[k];
+                mid[start + k] = adj._mid[k];
+            }
+        }
+
+        /** The original graph. */
+        private final Graph _G;
+        /** Edges leaving each uncontracted vertex in the remaining
+         *  graph. */
+        private final Adjacency[] _out;
+        /** Edges entering each uncontracted vertex in the remaining
+         *  graph. */
+        private final Adjacency[] _in;
+        /** Upward edges leaving each contracted vertex. */
+        private final Adjacency[] _upOut;
+        /** Upward edges entering each contracted vertex. */
+        private final Adjacency[] _upIn;
+        /** Rank of each vertex, or -1. */
+        private final int[] _rank;
+        /** Number of contracted neighbors of each vertex. */
+        private final int[] _deleted;
+        /** Distances found by the last witness search. */
+        private final double[] _dist;
+        /** Vertices whose _dist is not infinite. */
+        private final IntList _touched = new IntList();
+        /** _target[w] == _stamp iff w is a vertex the current witness
+         *  search is looking for. */
+        private final int[] _target;
+        /** Number of the current witness search. */
+        private int _stamp;
+        /** Number of edges in the remaining graph. */
+        private long _arcs;
+        /** Fringe of witness searches. */
+        private final DaryHeap _fringe = new DaryHeap();
+    }
+
+    /** A growable list of weighted edges to or from one vertex, holding at
+     *  most one (the lightest) edge per neighbor. */
+    private static class Adjacency {
+
+        /** Add an edge to NBR of weight WEIGHT bypassing MID (0 if none),
+         *  unless there is already an edge to NBR that is no heavier, in
+         *  which case it is replaced.  Returns true iff NBR is a new
+         *  neighbor. */
+        boolean put(int nbr, double weight, int mid) {
+            for (int k = 0; k < _size; k += 1) {
+                if (_nbr[k] == nbr) {
+                    if (weight < _weight[k]) {
+                        _weight[k] = weight;
+                        _mid[k] = mid;
+                    }
+                    return false;
+                }
+            }
+            if (_size == _nbr.length) {
+                int n = Math.max(INITIAL_DEGREE, 2 * _size);
+                _nbr = Arrays.copyOf(_nbr, n);
+                _weight = Arrays.copyOf(_weight, n);
+                _mid = Arrays.copyOf(_mid, n);
+            }
+            _nbr[_size] = nbr;
+            _weight[_size] = weight;
+            _mid[_size] = mid;
+            _size += 1;
+            return true;
+        }
+
+        /** Remove the edge to NBR, if any. */
+        void remove(int nbr) {
+            for (int k = 0; k < _size; k += 1) {
+                if (_nbr[k] == nbr) {
+                    _size -= 1;
+                    _nbr[k] = _nbr[_size];
+                    _weight[k] = _weight[_size];
+                    _mid[k] = _mid[_size];
+                    return;
+                }
+            }
+        }
+
+        /** Neighbors. */
+        private int[] _nbr = new int[0];
+        /** Weights parallel to _nbr. */
+        private double[] _weight = new double[0];
+        /** Bypassed vertices parallel to _nbr. */
+        private int[] _mid = new int[0];
+        /** Number of edges. */
+        private int _size;
+    }
+
+    /** Average out-degree of the remaining graph beyond which the
+     *  remaining vertices are left uncontracted as the core. */
+    private static final int CORE_DEGREE = 8;
+    /** Initial capacity of an Adjacency. */
+    private static final int INITIAL_DEGREE = 4;
+    /** Largest number of vertices settled by one witness search while
+     *  contracting a vertex. */
+    private static final int CONTRACT_SETTLE_LIMIT = 500;
+    /** Largest number of vertices settled by one witness search while
+     *  estimating the priority of a vertex. */
+    private static final int SIMULATE_SETTLE_LIMIT = 50;
+    /** Identifies a serialized hierarchy. */
+    private static final int MAGIC = 0x43484732;
+
+    /** One more than the maximum vertex of the original graph. */
+    private final int _n;
+    /** Fingerprint of the original graph and its weights. */
+    private final long _fingerprint;
+    /** Contraction order of each vertex, or -1 for non-vertices. */
+    private final int[] _rank;
+    /** Start of each vertex's upward out-edges, plus a final total. */
+    private final int[] _fwdStart;
+    /** Heads of upward out-edges. */
+    private final int[] _fwdTarget;
+    /** Weights of upward out-edges. */
+    private final double[] _fwdWeight;
+    /** Vertices bypassed by upward out-edges, or 0. */
+    private final int[] _fwdMid;
+    /** Start of each vertex's upward in-edges, plus a final total. */
+    private final int[] _bwdStart;
+    /** Tails of upward in-edges. */
+    private final int[] _bwdTarget;
+    /** Weights of upward in-edges. */
+    private final double[] _bwdWeight;
+    /** Vertices bypassed by upward in-edges, or 0. */
+    private final int[] _bwdMid;
+    /** Per-thread query state. */
+    private final ThreadLocal<Query> _queries =
+        ThreadLocal.withInitial(Query::new);
+}
@@ -0,0 +1,211 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/** An IndexedHeap implemented as an implicit D-ary heap.  _heap[0 .. _size)
+ *  holds the vertices in heap order with their priorities in the parallel
+ *  array _prio, and each vertex's position is one more than its index in
+ *  _heap (0 if it is absent), which lets add lower a present vertex's
+ *  priority in O(log_D n) time without creating duplicate entries.
+ *  Positions are kept in _pos, indexed by vertex, or, for a heap serving
+ *  a search that has leased a SearchSpace, in an int slot of that space,
+ *  so that the heap's storage, like the rest of the search's, grows with
+ *  the vertices it reaches rather than with the largest vertex number.
+ *  All other storage is primitive arrays that grow as needed.
+ *  @author esun
+ */
+class DaryHeap implements IndexedHeap {
+
+    /** An empty heap in which each node has up to ARITY (>= 2) children. */
+    DaryHeap(int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("heap arity must be >= 2");
+        }
+        _arity = arity;
+        _heap = new int[INITIAL_CAPACITY];
+        _prio = new double[INITIAL_CAPACITY];
+        _pos = new int[INITIAL_CAPACITY];
+        _positions = null;
+        _slot = 0;
+    }
+
+    /** An empty 4-ary heap that keeps the positions of its vertices in int
+     *  slot SLOT of POSITIONS, which must be 0 for vertices not in the
+     *  heap while it is in use. */
+    DaryHeap(SearchSpace positions, int slot) {
+        _arity = DEFAULT_ARITY;
+        _heap = new int[INITIAL_CAPACITY];
+        _prio = new double[INITIAL_CAPACITY];
+        _pos = null;
+        _positions = positions;
+        _slot = slot;
+    }
+
+    /** An empty 4-ary heap. */
+    DaryHeap() {
+        this(DEFAULT_ARITY);
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    @Override
+    public boolean contains(int v) {
+        return v > 0 && position(v) != 0;
+    }
+
+    @Override
+    public double priority(int v) {
+        if (!contains(v)) {
+            throw new NoSuchElementException("vertex not in heap");
+        }
+        return _prio[position(v) - 1];
+    }
+
+    @Override
+    public void add(int v, double priority) {
+        int k = position(v) - 1;
+        if (k < 0) {
+            if (_size == _heap.length) {
+                _heap = Arrays.copyOf(_heap, 2 * _size);
+                _prio = Arrays.copyOf(_prio, 2 * _size);
+            }
+            k = _size;
+            _size += 1;
+        } else if (priority >= _prio[k]) {
+            return;
+        }
+        siftUp(k, v, priority);
+    }
+
+    @Override
+    public int peekMin() {
+        if (_size == 0) {
+            throw new NoSuchElementException("heap is empty");
+        }
+        return _heap[0];
+    }
+
+    @Override
+    public int removeMin() {
+        int v = peekMin();
+        setPosition(v, 0);
+        _size -= 1;
+        if (_size > 0) {
+            siftDown(0, _heap[_size], _prio[_size]);
+        }
+        return v;
+    }
+
+    @Override
+    public void clear() {
+        for (int k = 0; k < _size; k += 1) {
+            setPosition(_heap[k], 0);
+        }
+        _size = 0;
+    }
+
+    /** Returns true iff vertex U with priority P should come out before
+     *  vertex V with priority Q. */
+    private static boolean before(int u, double p, int v, double q) {
+        return p < q || (p == q && u < v);
+    }
+
+    /** Place V, with priority P, at index K or above it, moving
+     *  lower-priority ancestors down. */
+    private void siftUp(int k, int v, double p) {
+        while (k > 0) {
+            int parent = (k - 1) / _arity;
+            if (!before(v, p, _heap[parent], _prio[parent])) {
+                break;
+            }
+            place(k, _heap[parent], _prio[parent]);
+            k = parent;
+        }
+        place(k, v, p);
+    }
+
+    /** Place V, with priority P, at index K or below it, moving
+     *  higher-priority descendants up. */
+    private void siftDown(int k, int v, double p) {
+        while (true) {
+            int first = k * _arity + 1;
+            if (first >= _size) {
+                break;
+            }
+            int best = first;
+            int last = Math.min(first + _arity, _size);
+            for (int c = first + 1; c < last; c += 1) {
+                if (before(_heap[c], _prio[c], _heap[best], _prio[best])) {
+                    best = c;
+                }
+            }
+            if (!before(_heap[best], _prio[best], v, p)) {
+                break;
+            }
+            place(k, _heap[best], _prio[best]);
+            k = best;
+        }
+        place(k, v, p);
+    }
+
+    /** Store V with priority P at index K. */
+    private void place(int k, int v, double p) {
+        _heap[k] = v;
+        _prio[k] = p;
+        setPosition(v, k + 1);
+    }
+
+    /** Returns the position of V: one more than its index in _heap, or 0
+     *  if it is absent. */
+    private int position(int v) {
+        if (_positions != null) {
+            return _positions.getInt(_slot, v);
+        }
+        return v < _pos.length ? _pos[v] : 0;
+    }
+
+    /** Set the position of V to K. */
+    private void setPosition(int v, int k) {
+        if (_positions != null) {
+            _positions.setInt(_slot, v, k);
+            return;
+        }
+        if (v >= _pos.length) {
+            _pos = Arrays.copyOf(_pos, Math.max(v + 1, 2 * _pos.length));
+        }
+        _pos[v] = k;
+    }
+
+    /** Arity used by the parameterless constructor. */
+    static final int DEFAULT_ARITY = 4;
+    /** Initial length of my arrays. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Maximum number of children per node. */
+    private final int _arity;
+    /** Vertices in heap order. */
+    private int[] _heap;
+    /** Priorities parallel to _heap. */
+    private double[] _prio;
+    /** One more than the index of each vertex in _heap, or 0, unless
+     *  positions are kept in _positions, in which case null. */
+    private int[] _pos;
+    /** The space holding positions in int slot _slot, or null if they
+     *  are kept in _pos. */
+    private final SearchSpace _positions;
+    /** The slot of _positions holding positions. */
+    private final int _slot;
+    /** Number of vertices in me. */
+    private int _size;
+}
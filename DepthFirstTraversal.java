@@ -2,19 +2,94 @@ package graph;
 
 /* See restrictions in Graph.java. */
 
-import java.util.ArrayDeque;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
 
 /** Implements a depth-first traversal of a graph.  Generally, the
  *  client will extend this class, overriding the visit and
  *  postVisit methods, as desired (by default, they do nothing).
+ *
+ *  Rather than the general fringe-based loop of Traversal, which pushes
+ *  every successor of a vertex as it is visited, a depth-first
+ *  traversal keeps an explicit stack of frames, one for each vertex
+ *  whose successors are being explored, holding the vertex and a
+ *  cursor over its successors.  Each step advances the cursor on top by
+ *  one edge, so the traversal does constant work and allocates nothing
+ *  per edge, a vertex is post-visited as soon as its cursor runs out,
+ *  and the depth of the graph is limited only by memory.  Vertices are
+ *  visited and post-visited in the same order as by Traversal's loop,
+ *  but processSuccessor(U, V) is called when the cursor of U reaches V,
+ *  rather than for all successors of U at once when U is visited.  G
+ *  must not change during a traversal.
  *  @author esun
  */
 public class DepthFirstTraversal extends Traversal {
 
     /** A depth-first Traversal of G. */
     protected DepthFirstTraversal(Graph G) {
-        super(G, Collections.asLifoQueue(new ArrayDeque<Integer>()));
+        super(G, new IntDeque(true));
+    }
+
+    @Override
+    public void traverse(Collection<Integer> V0) {
+        clear();
+        _stack.clear();
+        _cursors.clear();
+        IntList roots = new IntList(V0.size());
+        for (int v : V0) {
+            roots.add(v);
+        }
+        for (int k = roots.size() - 1; k >= 0; k -= 1) {
+            int v0 = roots.get(k);
+            if (marked(v0)) {
+                continue;
+            }
+            if (!enter(v0)) {
+                return;
+            }
+            while (_stack.size() > 0) {
+                int top = _stack.size() - 1;
+                int u = _stack.get(top);
+                IntIteration cursor = _cursors.get(top);
+                if (cursor.hasNext()) {
+                    int v = cursor.nextInt();
+                    if (processSuccessor(u, v) && !marked(v)
+                        && !enter(v)) {
+                        return;
+                    }
+                } else {
+                    _stack.removeAt(top);
+                    _cursors.remove(top);
+                    if (shouldPostVisit(u) && !postVisit(u)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Mark and visit V, and push a frame for it.  Returns false iff the
+     *  traversal is to terminate immediately. */
+    private boolean enter(int v) {
+        mark(v);
+        if (!visit(v)) {
+            return false;
+        }
+        IntIteration succs = graph().intSuccessors(v);
+        if (!reverseSuccessors(v)) {
+            IntList reversed = new IntList();
+            while (succs.hasNext()) {
+                reversed.add(succs.nextInt());
+            }
+            int[] data = new int[reversed.size()];
+            for (int k = 0; k < data.length; k += 1) {
+                data[k] = reversed.get(data.length - 1 - k);
+            }
+            succs = IntIteration.over(data, 0, data.length);
+        }
+        _stack.add(v);
+        _cursors.add(succs);
+        return true;
     }
 
     @Override
@@ -27,8 +102,16 @@ public class DepthFirstTraversal extends Traversal {
         return super.postVisit(v);
     }
 
+    /** Returns true, so that successors are explored in the order the
+     *  graph gives them.  A subclass returning false for V has the
+     *  successors of V explored in reverse order. */
     @Override
     protected boolean reverseSuccessors(int v) {
         return true;
     }
+
+    /** Vertices of the current frames, innermost last. */
+    private final IntList _stack = new IntList();
+    /** Successor cursors of the current frames, parallel to _stack. */
+    private final ArrayList<IntIteration> _cursors = new ArrayList<>();
 }
@@ -2,8 +2,6 @@ package graph;
 
 /* See restrictions in Graph.java. */
 
-import java.util.ArrayList;
-
 /** Represents a general unlabeled directed graph whose vertices are denoted by
  *  positive integers. Graphs may have self edges.
  *
@@ -21,16 +19,12 @@ public class DirectedGraph extends GraphObj {
         if (!contains(v)) {
             return 0;
         }
-        int a = _in.get(v).size();
-        return a;
+        return _in[v].size();
     }
 
     @Override
     public Iteration<Integer> predecessors(int v) {
-        if (v < _in.size() && _in.get(v) != null) {
-            return Iteration.iteration(_in.get(v));
-        }
-        return Iteration.iteration(new ArrayList<>());
+        return intPredecessors(v);
     }
 
 }
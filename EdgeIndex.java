@@ -0,0 +1,130 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+/** A hash table from vertex pairs (U, V) to positive ints, used to find
+ *  edges without scanning adjacency lists.  Uses open addressing with
+ *  linear probing over primitive arrays; a value of 0 marks an empty
+ *  slot.  Pairs are ordered: (U, V) and (V, U) are different keys.
+ *  @author esun
+ */
+class EdgeIndex {
+
+    /** An empty index. */
+    EdgeIndex() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /** An empty index with room for about N entries before growing. */
+    EdgeIndex(int n) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD < n) {
+            capacity *= 2;
+        }
+        _keys = new long[capacity];
+        _values = new int[capacity];
+    }
+
+    /** Returns the number of entries in me. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the value for (U, V), or 0 if there is none. */
+    int get(int u, int v) {
+        long key = key(u, v);
+        int mask = _keys.length - 1;
+        for (int i = slot(key, mask); _values[i] != 0; i = (i + 1) & mask) {
+            if (_keys[i] == key) {
+                return _values[i];
+            }
+        }
+        return 0;
+    }
+
+    /** Set the value for (U, V) to VALUE, which must be positive. */
+    void put(int u, int v, int value) {
+        if ((_size + 1) > _keys.length * MAX_LOAD) {
+            resize(_keys.length * 2);
+        }
+        long key = key(u, v);
+        int mask = _keys.length - 1;
+        int i;
+        for (i = slot(key, mask); _values[i] != 0; i = (i + 1) & mask) {
+            if (_keys[i] == key) {
+                _values[i] = value;
+                return;
+            }
+        }
+        _keys[i] = key;
+        _values[i] = value;
+        _size += 1;
+    }
+
+    /** Remove the entry for (U, V), if any. */
+    void remove(int u, int v) {
+        long key = key(u, v);
+        int mask = _keys.length - 1;
+        int i;
+        for (i = slot(key, mask); _keys[i] != key; i = (i + 1) & mask) {
+            if (_values[i] == 0) {
+                return;
+            }
+        }
+        if (_values[i] == 0) {
+            return;
+        }
+        _size -= 1;
+        for (int j = (i + 1) & mask; _values[j] != 0; j = (j + 1) & mask) {
+            int home = slot(_keys[j], mask);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                _keys[i] = _keys[j];
+                _values[i] = _values[j];
+                i = j;
+            }
+        }
+        _values[i] = 0;
+    }
+
+    /** Rehash my entries into tables of length CAPACITY. */
+    private void resize(int capacity) {
+        long[] keys = _keys;
+        int[] values = _values;
+        _keys = new long[capacity];
+        _values = new int[capacity];
+        int mask = capacity - 1;
+        for (int k = 0; k < keys.length; k += 1) {
+            if (values[k] != 0) {
+                int i = slot(keys[k], mask);
+                while (_values[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                _keys[i] = keys[k];
+                _values[i] = values[k];
+            }
+        }
+    }
+
+    /** Returns the key for the pair (U, V). */
+    private static long key(int u, int v) {
+        return ((long) u << Integer.SIZE) | (v & 0xffffffffL);
+    }
+
+    /** Returns the home slot of KEY in a table whose length is MASK + 1. */
+    private static int slot(long key, int mask) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> Integer.SIZE)) & mask;
+    }
+
+    /** Smallest table length (a power of 2). */
+    private static final int MIN_CAPACITY = 16;
+    /** Largest fraction of slots in use before the tables grow. */
+    private static final double MAX_LOAD = 0.5;
+
+    /** Keys, as produced by key(u, v). */
+    private long[] _keys;
+    /** Values parallel to _keys; 0 for an empty slot. */
+    private int[] _values;
+    /** Number of entries. */
+    private int _size;
+}
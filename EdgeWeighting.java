@@ -0,0 +1,16 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+/** A source of edge weights for a Graph, for structures that are built
+ *  from a weighted graph ahead of any particular search, such as
+ *  ContractionHierarchy.
+ *  @author esun
+ */
+public interface EdgeWeighting {
+
+    /** Returns the weight of the edge (U, V), which is assumed to be one
+     *  of the graph's edges.  Weights must be non-negative. */
+    double getWeight(int u, int v);
+
+}
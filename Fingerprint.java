@@ -0,0 +1,49 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+/** Fingerprints of weighted graphs.  Structures that are computed from a
+ *  weighted graph and saved to files, such as ContractionHierarchy and
+ *  Landmarks, store the fingerprint of the graph they were built from, so
+ *  that one read back is used only for the same graph: the same
+ *  vertices, the same edges in the same order, and the same weights.
+ *  @author esun
+ */
+final class Fingerprint {
+
+    /** Not instantiable. */
+    private Fingerprint() {
+    }
+
+    /** Returns a 64-bit hash of G with edge weights WEIGHTS, covering
+     *  whether G is directed, its maximum vertex, and, for each vertex in
+     *  order, the vertex, its successors in order, and the bits of the
+     *  weights of the edges to them. */
+    static long of(Graph G, EdgeWeighting weights) {
+        long h = mix(SEED, G.isDirected() ? 1 : 0);
+        h = mix(h, G.maxVertex());
+        for (IntIteration vs = G.intVertices(); vs.hasNext(); ) {
+            int v = vs.nextInt();
+            h = mix(h, -v);
+            for (IntIteration it = G.intSuccessors(v); it.hasNext(); ) {
+                int w = it.nextInt();
+                h = mix(h, w);
+                h = mix(h, Double.doubleToLongBits(weights.getWeight(v, w)));
+            }
+        }
+        return mix(h, G.edgeSize());
+    }
+
+    /** Returns hash H updated with X. */
+    private static long mix(long h, long x) {
+        h = (h ^ x) * MULTIPLIER;
+        return h ^ (h >>> SHIFT);
+    }
+
+    /** Initial hash value. */
+    private static final long SEED = 0x243f6a8885a308d3L;
+    /** Multiplier for mixing (2**64 / golden ratio, made odd). */
+    private static final long MULTIPLIER = 0x9e3779b97f4a7c15L;
+    /** Shift for mixing the high bits of the hash into the low ones. */
+    private static final int SHIFT = 29;
+}
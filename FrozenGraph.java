@@ -0,0 +1,306 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/** An immutable snapshot of a Graph in compressed-sparse-row form.  The
+ *  successors of vertex v are _outTarget[_outStart[v] .. _outStart[v+1]),
+ *  and the ids of the corresponding edges are the same slice of
+ *  _outEdge; predecessors are stored the same way in _inStart and
+ *  _inTarget (which are the _out arrays for undirected graphs).  Vertex
+ *  numbers, neighbor order, and edge ids are those of the original
+ *  graph, so labels kept by the original graph's LabeledGraph remain
+ *  meaningful.  Edges leaving vertices with more than LINEAR_SCAN_LIMIT
+ *  successors are also entered in a hash index, so that finding an edge
+ *  costs constant time even at high-degree vertices.
+ *
+ *  All operations that would modify a FrozenGraph throw
+ *  UnsupportedOperationException.
+ *  @author esun
+ */
+public class FrozenGraph extends Graph {
+
+    /** A snapshot of the current vertices and edges of G.  G must not be
+     *  modified while the snapshot is being built; later changes to G
+     *  do not affect it. */
+    public FrozenGraph(Graph G) {
+        _directed = G.isDirected();
+        _maxVertex = G.maxVertex();
+        _vertexSize = G.vertexSize();
+        _edgeSize = G.edgeSize();
+
+        int n = _maxVertex + 1;
+        _present = new boolean[n];
+        IntStream.range(1, n).parallel()
+            .forEach(v -> _present[v] = G.contains(v));
+
+        _outStart = offsets(n, G::intSuccessors);
+        _outTarget = new int[_outStart[n]];
+        _outEdge = new int[_outStart[n]];
+        IntStream.range(1, n).parallel().forEach(v -> {
+            int k = _outStart[v];
+            for (IntIteration it = G.intSuccessors(v); k < _outStart[v + 1];
+                 k += 1) {
+                int w = it.nextInt();
+                _outTarget[k] = w;
+                _outEdge[k] = G.edgeId(v, w);
+            }
+        });
+
+        int hubEdges = 0;
+        for (int v = 1; v < n; v += 1) {
+            if (_outStart[v + 1] - _outStart[v] > LINEAR_SCAN_LIMIT) {
+                hubEdges += _outStart[v + 1] - _outStart[v];
+            }
+        }
+        _hubIndex = new EdgeIndex(hubEdges);
+        for (int v = 1; v < n; v += 1) {
+            if (_outStart[v + 1] - _outStart[v] > LINEAR_SCAN_LIMIT) {
+                for (int k = _outStart[v]; k < _outStart[v + 1]; k += 1) {
+                    _hubIndex.put(v, _outTarget[k], k + 1);
+                }
+            }
+        }
+
+        if (_directed) {
+            _inStart = offsets(n, G::intPredecessors);
+            _inTarget = new int[_inStart[n]];
+            IntStream.range(1, n).parallel().forEach(v -> {
+                int k = _inStart[v];
+                for (IntIteration it = G.intPredecessors(v);
+                     k < _inStart[v + 1]; k += 1) {
+                    _inTarget[k] = it.nextInt();
+                }
+            });
+        } else {
+            _inStart = _outStart;
+            _inTarget = _outTarget;
+        }
+    }
+
+    /** Returns row offsets for vertices 0 .. N-1, where ROW gives the
+     *  entries of each row.  Each row's length is the number of entries
+     *  ROW delivers, so the rows are filled exactly by a second pass over
+     *  the same iterations.  The result has N + 1 entries, the last being
+     *  the total length. */
+    private static int[] offsets(int n, IntFunction<IntIteration> row) {
+        int[] start = new int[n + 1];
+        IntStream.range(1, n).parallel().forEach(v -> {
+            int length = 0;
+            for (IntIteration it = row.apply(v); it.hasNext(); it.nextInt()) {
+                length += 1;
+            }
+            start[v + 1] = length;
+        });
+        Arrays.parallelPrefix(start, Integer::sum);
+        return start;
+    }
+
+    @Override
+    public int vertexSize() {
+        return _vertexSize;
+    }
+
+    @Override
+    public int maxVertex() {
+        return _maxVertex;
+    }
+
+    @Override
+    public int edgeSize() {
+        return _edgeSize;
+    }
+
+    @Override
+    public boolean isDirected() {
+        return _directed;
+    }
+
+    @Override
+    public int outDegree(int v) {
+        return contains(v) ? _outStart[v + 1] - _outStart[v] : 0;
+    }
+
+    @Override
+    public int inDegree(int v) {
+        return contains(v) ? _inStart[v + 1] - _inStart[v] : 0;
+    }
+
+    @Override
+    public boolean contains(int u) {
+        return u > 0 && u <= _maxVertex && _present[u];
+    }
+
+    @Override
+    public boolean contains(int u, int v) {
+        return indexOf(u, v) != -1;
+    }
+
+    /** Returns the position of the edge (U, V) in _outTarget, or -1 if
+     *  there is no such edge. */
+    private int indexOf(int u, int v) {
+        if (!contains(u) || !contains(v)) {
+            return -1;
+        }
+        if (_outStart[u + 1] - _outStart[u] > LINEAR_SCAN_LIMIT) {
+            return _hubIndex.get(u, v) - 1;
+        }
+        for (int k = _outStart[u]; k < _outStart[u + 1]; k += 1) {
+            if (_outTarget[k] == v) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int add() {
+        throw new UnsupportedOperationException("graph is frozen");
+    }
+
+    @Override
+    public int add(int u, int v) {
+        throw new UnsupportedOperationException("graph is frozen");
+    }
+
+    @Override
+    public void remove(int v) {
+        throw new UnsupportedOperationException("graph is frozen");
+    }
+
+    @Override
+    public void remove(int u, int v) {
+        throw new UnsupportedOperationException("graph is frozen");
+    }
+
+    @Override
+    public Iteration<Integer> vertices() {
+        return intVertices();
+    }
+
+    @Override
+    IntIteration intVertices() {
+        return new IntIteration() {
+            @Override
+            public boolean hasNext() {
+                while (_v <= _maxVertex && !_present[_v]) {
+                    _v += 1;
+                }
+                return _v <= _maxVertex;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _v += 1;
+                return _v - 1;
+            }
+
+            /** Next vertex number to examine. */
+            private int _v = 1;
+        };
+    }
+
+    @Override
+    public Iteration<Integer> successors(int v) {
+        return intSuccessors(v);
+    }
+
+    @Override
+    IntIteration intSuccessors(int v) {
+        if (!contains(v)) {
+            return IntIteration.empty();
+        }
+        return IntIteration.over(_outTarget, _outStart[v], _outStart[v + 1]);
+    }
+
+    @Override
+    public Iteration<Integer> predecessors(int v) {
+        return intPredecessors(v);
+    }
+
+    @Override
+    IntIteration intPredecessors(int v) {
+        if (!contains(v)) {
+            return IntIteration.empty();
+        }
+        return IntIteration.over(_inTarget, _inStart[v], _inStart[v + 1]);
+    }
+
+    @Override
+    public Iteration<int[]> edges() {
+        return new Iteration<int[]>() {
+            @Override
+            public boolean hasNext() {
+                while (_k < _outTarget.length) {
+                    while (_k >= _outStart[_u + 1]) {
+                        _u += 1;
+                    }
+                    if (_directed || _u <= _outTarget[_k]) {
+                        return true;
+                    }
+                    _k += 1;
+                }
+                return false;
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _edge[0] = _u;
+                _edge[1] = _outTarget[_k];
+                _k += 1;
+                return _edge;
+            }
+
+            /** Current source vertex. */
+            private int _u;
+            /** Index in _outTarget of the next edge to examine. */
+            private int _k;
+            /** Array used to return each edge. */
+            private final int[] _edge = new int[2];
+        };
+    }
+
+    @Override
+    protected int edgeId(int u, int v) {
+        int k = indexOf(u, v);
+        return k == -1 ? 0 : _outEdge[k];
+    }
+
+    /** Largest out-degree for which edges are found by scanning the
+     *  successor row rather than through _hubIndex. */
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    /** True iff I am directed. */
+    private final boolean _directed;
+    /** Largest vertex number. */
+    private final int _maxVertex;
+    /** Number of vertices. */
+    private final int _vertexSize;
+    /** Number of edges. */
+    private final int _edgeSize;
+    /** _present[v] is true iff v is one of my vertices. */
+    private final boolean[] _present;
+    /** Start of the successor row of each vertex, plus a final total. */
+    private final int[] _outStart;
+    /** Successors, row by row. */
+    private final int[] _outTarget;
+    /** Edge ids parallel to _outTarget. */
+    private final int[] _outEdge;
+    /** Maps edges (u, v) leaving high-degree vertices u to one more than
+     *  their index in _outTarget. */
+    private final EdgeIndex _hubIndex;
+    /** Start of the predecessor row of each vertex, plus a final total. */
+    private final int[] _inStart;
+    /** Predecessors, row by row. */
+    private final int[] _inTarget;
+}
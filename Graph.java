@@ -85,12 +85,44 @@ public abstract class Graph {
      *  Empty if V is not my vertex. */
     public abstract Iteration<Integer> predecessors(int v);
 
+    /** Returns an IntIteration over all vertices in numerical order.
+     *  Delivers the same items as vertices(), but without boxing them.
+     *  By default, simply unboxes the items of vertices(). */
+    IntIteration intVertices() {
+        return IntIteration.unboxed(vertices());
+    }
+
+    /** Returns an IntIteration over all successors of V, in the same
+     *  order as successors(V).  Empty if V is not my vertex.  By default,
+     *  unboxes the items of successors(V), or returns it if it is already
+     *  an IntIteration, which lets graphs outside this package avoid
+     *  boxing. */
+    IntIteration intSuccessors(int v) {
+        return IntIteration.unboxed(successors(v));
+    }
+
+    /** Returns an IntIteration over all predecessors of V, in the same
+     *  order as predecessors(V).  Empty if V is not my vertex.  By
+     *  default, simply unboxes the items of predecessors(V). */
+    IntIteration intPredecessors(int v) {
+        return IntIteration.unboxed(predecessors(v));
+    }
+
     /** Returns successors(V).  This is a synonym typically used on
      *  undirected graphs. */
     public final Iteration<Integer> neighbors(int v) {
         return successors(v);
     }
 
+    /** Renumber my edges so that their ids run from 1 to edgeSize() in
+     *  their current relative order, and release the space held for the
+     *  ids of removed edges.  Edge labels kept by a LabeledGraph are
+     *  renumbered with them.  Previously returned edge ids become
+     *  invalid. */
+    final void compact() {
+        compactEdgeIds();
+    }
+
     /** Returns an iteration over all edges in me.  Edges are returned
      *  as two-element arrays (u, v), which are directed if the graph
      *  is.  The values in the array returned by .next() may have changed
@@ -115,4 +147,11 @@ public abstract class Graph {
      *  returned by add(u, v). */
     protected abstract int edgeId(int u, int v);
 
+    /** Perform compact(), returning an array that maps each old edge id
+     *  to its new one (0 for ids that were not in use), or null if no id
+     *  changed.  By default, changes nothing and returns null. */
+    int[] compactEdgeIds() {
+        return null;
+    }
+
 }
@@ -86,6 +86,21 @@ public class GraphFilter extends Graph {
         return _G.predecessors(v);
     }
 
+    @Override
+    IntIteration intVertices() {
+        return _G.intVertices();
+    }
+
+    @Override
+    IntIteration intSuccessors(int v) {
+        return _G.intSuccessors(v);
+    }
+
+    @Override
+    IntIteration intPredecessors(int v) {
+        return _G.intPredecessors(v);
+    }
+
     @Override
     public Iteration<int[]> edges() {
         return _G.edges();
@@ -96,6 +111,11 @@ public class GraphFilter extends Graph {
         return _G.edgeId(u, v);
     }
 
+    @Override
+    int[] compactEdgeIds() {
+        return _G.compactEdgeIds();
+    }
+
     @Override
     protected void checkMyVertex(int v) {
         _G.checkMyVertex(v);
@@ -2,25 +2,41 @@ package graph;
 
 /* See restrictions in Graph.java. */
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
 
 /** A partial implementation of Graph containing elements common to
  *  directed and undirected graphs.
  *
+ *  Adjacency is kept in primitive IntLists indexed by vertex number:
+ *  _out[v] holds the successors of v, _edgeID[v] the ids of the
+ *  corresponding edges, and _in[v] the predecessors of v.  In an
+ *  undirected graph, _in[v] is the same list as _out[v].  The end points
+ *  of edge e are _edgeEnds[2e] and _edgeEnds[2e + 1] (both 0 if e is
+ *  not in use); the ids not in use are kept on the stack _freeIds and
+ *  are handed out again before any new id.  _index maps each edge's end
+ *  points to its id, so that edges are found without scanning adjacency
+ *  lists; undirected edges are entered once, with the smaller end point
+ *  first.  The set bits of _vertices are the current vertex numbers, so
+ *  the smallest free number and the largest used one are found a word
+ *  at a time.
+ *
  *  @author esun
  */
 abstract class GraphObj extends Graph {
 
     /** A new, empty Graph. */
     GraphObj() {
-        _in = new ArrayList<ArrayList<Integer>>();
-        _in.add(null);
-        _out = new ArrayList<ArrayList<Integer>>();
-        _out.add(null);
-        _edgeID = new ArrayList<ArrayList<Integer>>();
-        _edgeID.add(null);
-        _edgeList = new ArrayList<int []>();
-        _edgeList.add(null);
+        _in = new IntList[INITIAL_VERTICES];
+        _out = new IntList[INITIAL_VERTICES];
+        _edgeID = new IntList[INITIAL_VERTICES];
+        _edgeEnds = new IntList();
+        _edgeEnds.add(0);
+        _edgeEnds.add(0);
+        _index = new EdgeIndex();
+        _freeIds = new IntList();
+        _vertices = new BitSet(INITIAL_VERTICES);
     }
 
     @Override
@@ -30,12 +46,12 @@ abstract class GraphObj extends Graph {
 
     @Override
     public int maxVertex() {
-        return _maxVertex;
+        return Math.max(0, _vertices.length() - 1);
     }
 
     @Override
     public int edgeSize() {
-        return _edgeList.size() - _freeEdges - 1;
+        return _edgeEnds.size() / 2 - _freeIds.size() - 1;
     }
 
     @Override
@@ -46,12 +62,7 @@ abstract class GraphObj extends Graph {
         if (!contains(v)) {
             return 0;
         }
-        if (_out.get(v) == null) {
-            return 0;
-        }
-        int size = _out.get(v).size();
-        return size;
-
+        return _out[v].size();
     }
 
     @Override
@@ -59,64 +70,33 @@ abstract class GraphObj extends Graph {
 
     @Override
     public boolean contains(int u) {
-        if ((u >= _out.size() || _out.get(u) == null)
-                && (u >= _in.size() || _in.get(u) == null)) {
-            return false;
-        }
-        return true;
+        return u > 0 && u < _out.length && _out[u] != null;
     }
 
     @Override
     public boolean contains(int u, int v) {
-        boolean a = indexOf(u, v) != -1;
-        return a;
+        return edgeId(u, v) != 0;
     }
 
-    /**
-     * @param u int 1
-     * @param v int 2
-     * @return int index
-     */
-    private int indexOf(int u, int v) {
-        if (!contains(u) || !contains(v)) {
-            return -1;
-        }
-        if (_out.get(u) == null) {
-            return -1;
-        }
-        return _out.get(u).indexOf(v);
-    }
-
-    /** Void expand.
-     * @param adj ArrayList of ArrayLists
-     * @param index int
-     * */
-    private void expand(ArrayList<ArrayList<Integer>> adj, int index) {
-        if (adj.size() <= index) {
-            for (int i = adj.size(); i <= index; i++) {
-                adj.add(i, null);
-            }
+    /** Make room for vertex number INDEX in all adjacency arrays. */
+    private void expand(int index) {
+        if (index >= _out.length) {
+            int n = Math.max(index + 1, _out.length * 2);
+            _out = Arrays.copyOf(_out, n);
+            _in = Arrays.copyOf(_in, n);
+            _edgeID = Arrays.copyOf(_edgeID, n);
         }
     }
 
     @Override
     public int add() {
-        int index = 0;
-        for (int i = 1; i < _maxVertex; i++) {
-            if (!contains(i)) {
-                index = i;
-                expand(_out, index);
-                _out.set(index, new ArrayList<Integer>());
-                break;
-            }
-        }
-        if (index == 0) {
-            index = _maxVertex + 1;
-            expand(_out, index);
-            _out.set(index, new ArrayList<Integer>());
-        }
+        int index = _vertices.nextClearBit(1);
+        expand(index);
+        _out[index] = new IntList();
+        _edgeID[index] = new IntList();
+        _in[index] = isDirected() ? new IntList() : _out[index];
+        _vertices.set(index);
         _vertexSize++;
-        _maxVertex = Math.max(index, _maxVertex);
         return index;
     }
 
@@ -125,25 +105,19 @@ abstract class GraphObj extends Graph {
         checkMyVertex(u);
         checkMyVertex(v);
 
-        int index = indexOf(u, v);
-        if (index != -1) {
-            return index;
-        }
-        if (!contains(u)) {
-            _vertexSize++;
-        }
-        if (!contains(v)) {
-            _vertexSize++;
+        int existing = edgeId(u, v);
+        if (existing != 0) {
+            return existing;
         }
         int edgeID = getNextAvailableEdge(u, v);
 
-        addOne(_edgeID, u, edgeID);
-        addOne(_out, u, v);
-        addOne(_in, v, u);
-        if (!isDirected() && u != v) {
-            addOne(_edgeID, v, edgeID);
-            addOne(_out, v, u);
-            addOne(_in, u, v);
+        _out[u].add(v);
+        _edgeID[u].add(edgeID);
+        if (isDirected()) {
+            _in[v].add(u);
+        } else if (u != v) {
+            _out[v].add(u);
+            _edgeID[v].add(edgeID);
         }
         return edgeID;
     }
@@ -151,36 +125,25 @@ abstract class GraphObj extends Graph {
     /**
      * @param u int 1
      * @param v int 2
-     * @return index
+     * @return an unused id for the edge (U, V), recording its end points.
      */
     private int getNextAvailableEdge(int u, int v) {
-        int[] edge = new int[2];
-        if (isDirected()) {
-            edge[0] = u;
-            edge[1] = v;
+        if (!isDirected() && u > v) {
+            return getNextAvailableEdge(v, u);
+        }
+        int edgeID;
+        if (_freeIds.size() > 0) {
+            edgeID = _freeIds.get(_freeIds.size() - 1);
+            _freeIds.removeAt(_freeIds.size() - 1);
+            _edgeEnds.set(2 * edgeID, u);
+            _edgeEnds.set(2 * edgeID + 1, v);
         } else {
-            edge[0] = Math.min(u, v);
-            edge[1] = Math.max(u, v);
+            _edgeEnds.add(u);
+            _edgeEnds.add(v);
+            edgeID = _edgeEnds.size() / 2 - 1;
         }
-        _edgeList.add(edge);
-        return _edgeList.size() - 1;
-    }
-
-
-    /**
-     * @param adj arraylist of in/out
-     * @param u int 1
-     * @param v int 2
-     */
-    private void addOne(ArrayList<ArrayList<Integer>> adj, int u, int v) {
-        while (adj.size() <= u) {
-            adj.add(null);
-        }
-        if (adj.get(u) == null) {
-            adj.set(u, new ArrayList<Integer>());
-            _maxVertex = Math.max(u, _maxVertex);
-        }
-        adj.get(u).add(v);
+        _index.put(u, v, edgeID);
+        return edgeID;
     }
 
     @Override
@@ -188,109 +151,59 @@ abstract class GraphObj extends Graph {
         if (!contains(v)) {
             return;
         }
-        if (v == maxVertex()) {
-            for (int i = v - 1; i >= 0; i--) {
-                if (_out.get(i) != null || _in.get(i) != null) {
-                    _maxVertex = i;
-                    break;
-                }
-            }
-            if (v == maxVertex()) {
-                _maxVertex = 0;
-            }
-        }
         _vertexSize--;
 
-        if (v < _out.size() && _out.get(v) != null) {
-            for (int i : _out.get(v)) {
-                removeOnePair(_in, i, v);
-                if (!isDirected() && i != v) {
-                    removeOnePair(_in, v, i);
-                }
-            }
-        }
-        if (v < _in.size() && _in.get(v) != null) {
-            for (int i : _in.get(v)) {
-                removeOut(i, v);
-            }
+        for (int k = _out[v].size() - 1; k >= 0; k--) {
+            removeOut(v, k);
         }
-
-        if (v < _out.size() && _out.get(v) != null) {
-            for (int i = _out.get(v).size() - 1; i >= 0; i--) {
-                removeOut(v, _out.get(v).get(i));
-            }
-            if (v == _out.size() - 1) {
-                _out.remove(v);
-            } else {
-                _out.set(v, null);
-            }
-
-
-            expand(_edgeID, v);
-            if (v == _edgeID.size() - 1) {
-                _edgeID.remove(v);
-            } else {
-                _edgeID.set(v, null);
+        if (isDirected()) {
+            for (int k = _in[v].size() - 1; k >= 0; k--) {
+                int u = _in[v].get(k);
+                removeOut(u, _out[u].indexOf(v));
             }
         }
-        if (v < _in.size() && _in.get(v) != null) {
-            _in.set(v, null);
-        }
+        _out[v] = _in[v] = _edgeID[v] = null;
+        _vertices.clear(v);
     }
 
     @Override
     public void remove(int u, int v) {
-        int index = indexOf(u, v);
-        if (index == -1) {
-            return;
+        if (contains(u, v)) {
+            removeOut(u, _out[u].indexOf(v));
         }
-        removeOnePair(_in, v, u);
-
-        if (!isDirected() && u != v) {
-            removeOnePair(_in, u, v);
-        }
-        removeOut(u, v);
-        int x = 0;
     }
 
-    /**
+    /** Remove the edge from U to its Kth successor, together with its
+     *  entries in the predecessor (or, if undirected, reverse successor)
+     *  list of the other end point.
      * @param u int 1
-     * @param v int 2
+     * @param k index into _out[U]
      */
-    private void removeOut(int u, int v) {
-        int outindex = removeOnePair(_out, u, v);
-        int currentEdgeID = _edgeID.get(u).get(outindex);
-        _edgeID.get(u).remove(outindex);
-
-        if (!isDirected() && u != v) {
-            int rindex = removeOnePair(_out, v, u);
-            int rEdgeID = _edgeID.get(v).get(rindex);
-            _edgeID.get(v).remove(rindex);
-        }
-        _edgeList.set(currentEdgeID, null);
-        _freeEdges++;
-    }
+    private void removeOut(int u, int k) {
+        int v = _out[u].get(k);
+        int currentEdgeID = _edgeID[u].get(k);
+        _out[u].removeAt(k);
+        _edgeID[u].removeAt(k);
 
-    /**
-     * @param adj arraylist of in/out
-     * @param u int 1
-     * @param v int 2
-     * @return int index
-     */
-    private int removeOnePair(ArrayList<ArrayList<Integer>> adj, int u, int v) {
-        if (adj.get(u) == null) {
-            return -1;
-        }
-        int index = adj.get(u).indexOf(v);
-        adj.get(u).remove(index);
-        return index;
+        if (isDirected()) {
+            _in[v].removeAt(_in[v].indexOf(u));
+        } else if (u != v) {
+            int rindex = _out[v].indexOf(u);
+            _out[v].removeAt(rindex);
+            _edgeID[v].removeAt(rindex);
+        }
+        _index.remove(_edgeEnds.get(2 * currentEdgeID),
+                      _edgeEnds.get(2 * currentEdgeID + 1));
+        _edgeEnds.set(2 * currentEdgeID, 0);
+        _edgeEnds.set(2 * currentEdgeID + 1, 0);
+        _freeIds.add(currentEdgeID);
     }
 
     /** Vertex Iterator. */
-    private static class VertexIteration extends Iteration<Integer> {
-        /** ITER as an iteration.
-         * @param list List. */
-        VertexIteration(ArrayList<ArrayList<Integer>> list) {
+    private static class VertexIteration extends IntIteration {
+        /** An iteration over the non-null entries of LIST.
+         * @param list adjacency array. */
+        VertexIteration(IntList[] list) {
             _list = list;
             _index = 0;
             advance();
@@ -298,95 +211,107 @@ abstract class GraphObj extends Graph {
 
         @Override
         public boolean hasNext() {
-            boolean a = _index < _list.size();
-            return a;
+            return _index < _list.length;
         }
 
         /** Advance. */
         private void advance() {
-            while (_index < _list.size() - 1) {
+            _index++;
+            while (_index < _list.length && _list[_index] == null) {
                 _index++;
-                if (_list.get(_index) != null) {
-                    return;
-                }
-            }
-            if (_index == _list.size() - 1) {
-                _index = _list.size();
             }
         }
 
         @Override
-        public Integer next() {
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
             int indexToReturn = _index;
             advance();
             return indexToReturn;
         }
-        /** The iterator with which I was constructed. */
-        private ArrayList<ArrayList<Integer>> _list;
+        /** The adjacency array with which I was constructed. */
+        private IntList[] _list;
         /** Current index. */
         private int _index;
     }
 
     /** Edge Iterator. */
     private static class EdgeIteration extends Iteration<int[]> {
-        /** ITER as an iteration.
-         * @param list List. */
-        EdgeIteration(ArrayList<int[]> list) {
-            _list = list;
+        /** An iteration over the live edges recorded in ENDS.
+         * @param ends end point pairs, indexed by edge id. */
+        EdgeIteration(IntList ends) {
+            _ends = ends;
             _index = 0;
             advance();
         }
 
         @Override
         public boolean hasNext() {
-            boolean a = _index < _list.size();
-            return a;
+            return 2 * _index < _ends.size();
         }
 
         /** Advance. */
         private void advance() {
-            while (_index < _list.size() - 1) {
+            _index++;
+            while (2 * _index < _ends.size() && _ends.get(2 * _index) == 0) {
                 _index++;
-                if (_list.get(_index) != null) {
-                    return;
-                }
-            }
-            if (_index == _list.size() - 1) {
-                _index = _list.size();
             }
         }
 
         @Override
         public int[] next() {
-            int indexToReturn = _index;
+            _edge[0] = _ends.get(2 * _index);
+            _edge[1] = _ends.get(2 * _index + 1);
             advance();
-            return _list.get(indexToReturn);
+            return _edge;
         }
-        /** The iterator with which I was constructed. */
-        private ArrayList<int[]> _list;
+        /** End points with which I was constructed. */
+        private IntList _ends;
         /** Index in iterator. */
         private int _index;
+        /** Array used to return each edge. */
+        private final int[] _edge = new int[2];
     }
 
     @Override
     public Iteration<Integer> vertices() {
+        return intVertices();
+    }
+
+    @Override
+    IntIteration intVertices() {
         return new VertexIteration(_out);
     }
 
     @Override
     public Iteration<Integer> successors(int v) {
-        if (v < _out.size() && _out.get(v) != null) {
-            return Iteration.iteration(_out.get(v));
+        return intSuccessors(v);
+    }
+
+    @Override
+    IntIteration intSuccessors(int v) {
+        if (contains(v)) {
+            return _out[v].iteration();
         }
-        return Iteration.iteration(new ArrayList<>());
+        return IntIteration.empty();
     }
 
     @Override
     public abstract Iteration<Integer> predecessors(int v);
 
+    @Override
+    IntIteration intPredecessors(int v) {
+        if (contains(v)) {
+            return _in[v].iteration();
+        }
+        return IntIteration.empty();
+    }
+
     @Override
     public Iteration<int[]> edges() {
-        return new EdgeIteration(_edgeList);
+        return new EdgeIteration(_edgeEnds);
     }
 
     @Override
@@ -394,41 +319,81 @@ abstract class GraphObj extends Graph {
         super.checkMyVertex(v);
     }
 
+    @Override
+    int[] compactEdgeIds() {
+        if (_freeIds.size() == 0) {
+            return null;
+        }
+        int n = _edgeEnds.size() / 2;
+        int[] newId = new int[n];
+        IntList ends = new IntList(2 * (edgeSize() + 1));
+        ends.add(0);
+        ends.add(0);
+        _index = new EdgeIndex(edgeSize());
+        for (int e = 1; e < n; e += 1) {
+            int u = _edgeEnds.get(2 * e), v = _edgeEnds.get(2 * e + 1);
+            if (u != 0) {
+                ends.add(u);
+                ends.add(v);
+                newId[e] = ends.size() / 2 - 1;
+                _index.put(u, v, newId[e]);
+            }
+        }
+        for (IntList ids : _edgeID) {
+            if (ids != null) {
+                for (int k = 0; k < ids.size(); k += 1) {
+                    ids.set(k, newId[ids.get(k)]);
+                }
+            }
+        }
+        _edgeEnds = ends;
+        _freeIds = new IntList();
+        return newId;
+    }
+
     @Override
     protected int edgeId(int u, int v) {
-        int index = indexOf(u, v);
-        if (index == -1) {
+        if (!contains(u) || !contains(v)) {
             return 0;
         }
-        return _edgeID.get(u).get(index);
+        if (!isDirected() && u > v) {
+            return _index.get(v, u);
+        }
+        return _index.get(u, v);
     }
 
+    /** Initial length of the adjacency arrays. */
+    private static final int INITIAL_VERTICES = 16;
+    /**
+     * @param _in predecessor lists, indexed by vertex
+     */
+    protected IntList[] _in;
     /**
-     * @param _in Arraylist of Arraylist representing in connections
+     * @param _out successor lists, indexed by vertex
      */
-    protected ArrayList<ArrayList<Integer>> _in;
+    protected IntList[] _out;
     /**
-     * @param _out Arraylist of Arraylist representing out connections
+     * @param _edgeID edge ids parallel to _out, indexed by vertex
      */
-    protected ArrayList<ArrayList<Integer>> _out;
+    private IntList[] _edgeID;
     /**
-     * @param _edgeID Arraylist of Arraylist representing edge IDs
+     * @param _edgeEnds end points of each edge id, two per id
      */
-    private ArrayList<ArrayList<Integer>> _edgeID;
+    private IntList _edgeEnds;
     /**
-     * @param _edgeList edgelist of Arraylist of Arraylist
+     * @param _index edge ids keyed by end points
      */
-    private ArrayList<int []> _edgeList;
+    private EdgeIndex _index;
     /**
-     * @param _maxVertex vertex with largest value
+     * @param _vertices the set of current vertex numbers
      */
-    private int _maxVertex;
+    private BitSet _vertices;
     /**
      * @param _vertexSize number of vertices
      */
     private int _vertexSize;
     /**
-     * @param _freeEdges edges skipped in adj implementation
+     * @param _freeIds edge ids no longer in use, most recently freed last
      */
-    private int _freeEdges;
+    private IntList _freeIds;
 }
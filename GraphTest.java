@@ -1,6 +1,11 @@
 package graph;
 
 import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -156,6 +161,30 @@ public class GraphTest {
         assertEquals("Successors: ", Arrays.asList(), lst);
     }
 
+    @Test
+    public void testIntIterations() {
+        Graph g = buildDirectedGraph();
+        g.add(4, 4);
+        Graph lg = new LabeledGraph<String, String>(g);
+        ArrayList<Integer> lst = new ArrayList<>();
+        for (IntIteration it = lg.intSuccessors(4); it.hasNext(); ) {
+            lst.add(it.nextInt());
+        }
+        assertEquals(Arrays.asList(3, 7, 4), lst);
+        lst.clear();
+        for (IntIteration it = g.intPredecessors(4); it.hasNext(); ) {
+            lst.add(it.nextInt());
+        }
+        assertEquals(Arrays.asList(1, 4), lst);
+        lst.clear();
+        for (IntIteration it = g.intVertices(); it.hasNext(); ) {
+            lst.add(it.nextInt());
+        }
+        assertEquals(Arrays.asList(1, 3, 4, 6, 7, 8, 9), lst);
+        assertFalse(g.intSuccessors(2).hasNext());
+        assertFalse(g.intPredecessors(100).hasNext());
+    }
+
     @Test
     public void testVertices1() {
         Graph g = buildDirectedGraph();
@@ -235,7 +264,13 @@ public class GraphTest {
         g.remove(4, 7);
         g.add(4, 7);
 
-        assertEquals(8, g.edgeId(4, 7));
+        assertEquals(4, g.edgeId(4, 7));
+        g.add(8, 1);
+        assertEquals(3, g.edgeId(8, 1));
+        g.add(8, 4);
+        assertEquals(6, g.edgeId(8, 4));
+        g.add(8, 6);
+        assertEquals(8, g.edgeId(8, 6));
 
     }
 
@@ -309,6 +344,334 @@ public class GraphTest {
                 + " (9 post) ", m.toString());
     }
 
+    @Test
+    public void testRepeatedTraversals() {
+        Graph g = buildDirectedGraph();
+        DFSPrint m = new DFSPrint(g, true);
+        m.traverse(9);
+        String first = m.toString();
+        m._ret = "";
+        m.traverse(9);
+        assertEquals(first, m.toString());
+
+        int v = g.add();
+        g.add(v, 9);
+        m._ret = "";
+        m.traverse(v);
+        assertEquals(v + " " + first + "(" + v + " post) ", m.toString());
+
+        m._ret = "";
+        m.traverse(4);
+        DFSPrint fresh = new DFSPrint(g, true);
+        fresh.traverse(4);
+        assertEquals(fresh.toString(), m.toString());
+    }
+
+    @Test
+    public void testSearchSpace() {
+        SearchSpace space = SearchSpace.lease(this, 10000, 1);
+        space.setDefault(0, Double.POSITIVE_INFINITY);
+        for (int v = 0; v < 10000; v += 37) {
+            space.setInt(1, v, -v);
+            space.setDouble(0, v, v / 2.0);
+            space.setFlag(3, v);
+        }
+        assertFalse(space.isDense());
+        for (int v = 0; v < 10000; v += 1) {
+            int x = v % 37 == 0 ? -v : 0;
+            assertEquals(x, space.getInt(1, v));
+            assertEquals(0, space.getInt(0, v));
+            assertEquals(v % 37 == 0 ? v / 2.0 : Double.POSITIVE_INFINITY,
+                         space.getDouble(0, v), 0.0);
+            assertEquals(v % 37 == 0, space.flag(3, v));
+            assertFalse(space.flag(4, v));
+        }
+        for (int v = 1; v < 10000; v += 3) {
+            space.setInt(0, v, v);
+        }
+        assertTrue(space.isDense());
+        assertEquals(-37, space.getInt(1, 37));
+        assertEquals(37, space.getInt(0, 37));
+        assertEquals(0, space.getInt(0, 36));
+        assertTrue(space.flag(3, 74));
+        space.clear();
+        assertEquals(0, space.getInt(1, 37));
+        assertFalse(space.flag(3, 74));
+        assertEquals(Double.POSITIVE_INFINITY, space.getDouble(0, 74), 0.0);
+        space.release();
+    }
+
+    /** Records the visits and post-visits of a depth-first traversal,
+     *  stopping after LIMIT of them. */
+    private static class DFSRecorder extends DepthFirstTraversal {
+        DFSRecorder(Graph g, int limit) {
+            super(g);
+            _limit = limit;
+        }
+
+        @Override
+        protected boolean visit(int v) {
+            _events.add(v);
+            return _events.size() < _limit;
+        }
+
+        @Override
+        protected boolean postVisit(int v) {
+            _events.add(-v);
+            return _events.size() < _limit;
+        }
+
+        @Override
+        protected boolean shouldPostVisit(int v) {
+            return v % 3 != 0;
+        }
+
+        final List<Integer> _events = new ArrayList<>();
+        private final int _limit;
+    }
+
+    /** Records the same events as DFSRecorder, using the general
+     *  fringe-based loop of Traversal with a LIFO fringe. */
+    private static class FringeRecorder extends Traversal {
+        FringeRecorder(Graph g, int limit) {
+            super(g, new IntDeque(true));
+            _limit = limit;
+        }
+
+        @Override
+        protected boolean visit(int v) {
+            _events.add(v);
+            return _events.size() < _limit;
+        }
+
+        @Override
+        protected boolean postVisit(int v) {
+            _events.add(-v);
+            return _events.size() < _limit;
+        }
+
+        @Override
+        protected boolean shouldPostVisit(int v) {
+            return v % 3 != 0;
+        }
+
+        @Override
+        protected boolean reverseSuccessors(int v) {
+            return true;
+        }
+
+        final List<Integer> _events = new ArrayList<>();
+        private final int _limit;
+    }
+
+    @Test
+    public void testDFSOrder() {
+        Random rand = new Random(29);
+        for (int trial = 0; trial < 40; trial++) {
+            Graph g = trial % 2 == 0 ? new DirectedGraph()
+                : new UndirectedGraph();
+            int n = 5 + rand.nextInt(60);
+            for (int i = 1; i <= n; i++) {
+                g.add();
+            }
+            for (int i = rand.nextInt(3 * n); i > 0; i--) {
+                g.add(1 + rand.nextInt(n), 1 + rand.nextInt(n));
+            }
+            List<Integer> roots = Arrays.asList(1 + rand.nextInt(n),
+                                                1 + rand.nextInt(n), 1);
+            int limit = trial % 4 == 1 ? 1 + rand.nextInt(n) : 4 * n;
+            FringeRecorder expected = new FringeRecorder(g, limit);
+            DFSRecorder dfs = new DFSRecorder(g, limit);
+            expected.traverse(roots);
+            dfs.traverse(roots);
+            assertEquals(expected._events, dfs._events);
+        }
+    }
+
+    @Test
+    public void testLazyTraversals() {
+        Random rand = new Random(31);
+        for (int trial = 0; trial < 20; trial++) {
+            Graph g = trial % 2 == 0 ? new DirectedGraph()
+                : new UndirectedGraph();
+            int n = 5 + rand.nextInt(60);
+            for (int i = 1; i <= n; i++) {
+                g.add();
+            }
+            double[][] w = new double[n + 1][n + 1];
+            for (int i = rand.nextInt(3 * n); i > 0; i--) {
+                int u = 1 + rand.nextInt(n), v = 1 + rand.nextInt(n);
+                if (!g.contains(u, v)) {
+                    g.add(u, v);
+                    w[u][v] = w[v][u] = rand.nextInt(10);
+                }
+            }
+            int s = 1 + rand.nextInt(n);
+
+            List<Integer> bfs = new ArrayList<>();
+            new BreadthFirstTraversal(g) {
+                @Override
+                protected boolean visit(int v) {
+                    bfs.add(v);
+                    return true;
+                }
+            }.traverse(s);
+            List<Integer> lazy = new ArrayList<>();
+            for (int v : Traversals.breadthFirst(g, s)) {
+                lazy.add(v);
+            }
+            assertEquals(bfs, lazy);
+
+            DFSRecorder dfs = new DFSRecorder(g, Integer.MAX_VALUE) {
+                @Override
+                protected boolean shouldPostVisit(int v) {
+                    return true;
+                }
+            };
+            dfs.traverse(s);
+            List<Integer> pre = new ArrayList<>(), post = new ArrayList<>();
+            for (int v : dfs._events) {
+                (v > 0 ? pre : post).add(Math.abs(v));
+            }
+            lazy.clear();
+            for (IntIteration it = Traversals.intPreorder(g, s);
+                 it.hasNext(); ) {
+                lazy.add(it.nextInt());
+            }
+            assertEquals(pre, lazy);
+            lazy.clear();
+            for (int v : Traversals.postorder(g, s)) {
+                lazy.add(v);
+            }
+            assertEquals(post, lazy);
+
+            double[] dist = new double[n + 1];
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+            dist[s] = 0;
+            for (int i = 0; i < n; i++) {
+                for (int[] e : g.edges()) {
+                    dist[e[1]] = Math.min(dist[e[1]],
+                                          dist[e[0]] + w[e[0]][e[1]]);
+                    if (!g.isDirected()) {
+                        dist[e[0]] = Math.min(dist[e[0]],
+                                              dist[e[1]] + w[e[0]][e[1]]);
+                    }
+                }
+            }
+            Traversals.SettleOrder settled =
+                Traversals.intSettleOrder(g, (u, v) -> w[u][v], s);
+            double last = 0;
+            int count = 0;
+            while (settled.hasNext()) {
+                int v = settled.nextInt();
+                assertEquals(dist[v], settled.distance(), 0.0);
+                assertTrue(last <= settled.distance());
+                last = settled.distance();
+                count++;
+            }
+            assertEquals(Arrays.stream(dist).filter(d -> d < 1e9).count(),
+                         count);
+            assertEquals(bfs.size(), count);
+        }
+    }
+
+    @Test
+    public void testIsochrone() {
+        Random rand = new Random(37);
+        UndirectedGraph g = new UndirectedGraph();
+        int n = 400;
+        for (int i = 1; i <= n; i++) {
+            g.add();
+        }
+        double[][] w = new double[n + 1][n + 1];
+        for (int i = 0; i < 1200; i++) {
+            int u = 1 + rand.nextInt(n), v = 1 + rand.nextInt(n);
+            g.add(u, v);
+            w[u][v] = w[v][u] = 1 + rand.nextInt(9);
+        }
+        EdgeWeighting weights = (u, v) -> w[u][v];
+        int[] sources = { 1, 50, 399, 50 };
+        Isochrone[] all = Isochrone.reachWithin(g, weights, sources, 12.0);
+        for (int i = 0; i < sources.length; i++) {
+            Isochrone iso = all[i];
+            assertEquals(sources[i], iso.source());
+            assertEquals(12.0, iso.radius(), 0.0);
+            List<Integer> expected = new ArrayList<>();
+            List<Double> dists = new ArrayList<>();
+            Traversals.SettleOrder settled =
+                Traversals.intSettleOrder(g, weights, sources[i]);
+            while (settled.hasNext()) {
+                int v = settled.nextInt();
+                if (settled.distance() > 12.0) {
+                    break;
+                }
+                expected.add(v);
+                dists.add(settled.distance());
+            }
+            assertEquals(expected.size(), iso.size());
+            for (int k = 0; k < iso.size(); k++) {
+                assertEquals((int) expected.get(k), iso.vertices()[k]);
+                assertEquals(dists.get(k), iso.distances()[k], 0.0);
+            }
+
+            SimpleShortestPaths oracle =
+                new SimpleShortestPaths(g, sources[i]) {
+                    @Override
+                    protected double getWeight(int u, int v) {
+                        return w[u][v];
+                    }
+                };
+            oracle.pathTo(sources[i]);
+            double[] found = new double[n + 1];
+            Arrays.fill(found, Double.POSITIVE_INFINITY);
+            for (int k = 0; k < iso.size(); k++) {
+                found[iso.vertices()[k]] = iso.distances()[k];
+            }
+            for (int v = 1; v <= n; v++) {
+                double d = oracle.getWeight(v);
+                assertEquals(d <= 12.0 ? d : Double.POSITIVE_INFINITY,
+                             found[v], 0.0);
+            }
+        }
+        assertArrayEquals(all[1].vertices(), all[3].vertices());
+        assertEquals(1, new Isochrone(g, weights, 7, 0.0).size());
+    }
+
+    @Test
+    public void testIsochroneBoundary() {
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 1; i <= 4; i++) {
+            g.add();
+        }
+        g.add(1, 2);
+        g.add(2, 3);
+        g.add(3, 4);
+        double radius = 5.0;
+        EdgeWeighting weights = (u, v) ->
+            u == 1 ? 2.0 : u == 2 ? 3.0 : Math.ulp(radius);
+        Isochrone iso = new Isochrone(g, weights, 1, radius);
+        assertArrayEquals(new int[] { 1, 2, 3 }, iso.vertices());
+        assertEquals(radius, iso.distances()[2], 0.0);
+        iso = new Isochrone(g, weights, 1, Math.nextUp(radius));
+        assertArrayEquals(new int[] { 1, 2, 3, 4 }, iso.vertices());
+        assertEquals(Math.nextUp(radius), iso.distances()[3], 0.0);
+    }
+
+    @Test
+    public void testDeepDFS() {
+        DirectedGraph g = new DirectedGraph();
+        g.add();
+        for (int i = 2; i <= 200000; i++) {
+            g.add(i - 1, g.add());
+        }
+        DFSRecorder dfs = new DFSRecorder(g, Integer.MAX_VALUE);
+        dfs.traverse(1);
+        assertEquals(200000 + 200000 - 200000 / 3, dfs._events.size());
+        assertEquals((Integer) 200000, dfs._events.get(199999));
+        assertEquals((Integer) (-200000), dfs._events.get(200000));
+        assertEquals((Integer) (-1), dfs._events.get(dfs._events.size() - 1));
+    }
+
     private class TopologicalOrder extends DepthFirstTraversal {
 
         TopologicalOrder(Graph g, boolean shouldPostVisit) {
@@ -501,6 +864,325 @@ public class GraphTest {
 
     }
 
+    @Test
+    public void testCompactLabels() {
+        LabeledGraph<String, Integer> g = buildLabeledGraph();
+        g.remove(9);
+        g.remove(1, 3);
+        g.remove(6, 7);
+        int e = g.add(5, 6);
+        assertEquals(null, g.getLabel(5, 6));
+        assertTrue(e <= 13);
+        g.setLabel(5, 6, 11);
+
+        Compaction.compact(g);
+        assertEquals("Edges after compaction", 8, g.edgeSize());
+        boolean[] used = new boolean[g.edgeSize() + 1];
+        for (int[] edge : g.edges()) {
+            int id = g.edgeId(edge[0], edge[1]);
+            assertTrue(id >= 1 && id <= g.edgeSize());
+            assertFalse(used[id]);
+            used[id] = true;
+        }
+        assertEquals((Integer) 4, g.getLabel(1, 2));
+        assertEquals((Integer) 6, g.getLabel(3, 7));
+        assertEquals((Integer) 1, g.getLabel(4, 5));
+        assertEquals((Integer) 2, g.getLabel(7, 4));
+        assertEquals((Integer) 11, g.getLabel(5, 6));
+        assertEquals(9, g.add(5, 7, 12));
+        assertEquals((Integer) 12, g.getLabel(5, 7));
+        assertEquals("Node 3", g.getLabel(3));
+    }
+
+    @Test
+    public void testDaryHeap() {
+        Random rand = new Random(7);
+        SearchSpace space = SearchSpace.lease(this, 200, 0);
+        for (int arity = 1; arity <= 5; arity++) {
+            // Arity 1 stands for a 4-ary heap keeping positions in SPACE.
+            IndexedHeap h =
+                arity == 1 ? new DaryHeap(space, 1) : new DaryHeap(arity);
+            double[] best = new double[200];
+            Arrays.fill(best, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < 1000; i++) {
+                int v = 1 + rand.nextInt(199);
+                double p = rand.nextInt(50);
+                h.add(v, p);
+                best[v] = Math.min(best[v], p);
+                assertEquals(best[v], h.priority(v), 0.0);
+            }
+            int prev = 0;
+            double prevP = Double.NEGATIVE_INFINITY;
+            int n = 0;
+            while (!h.isEmpty()) {
+                int v = h.removeMin();
+                assertFalse(h.contains(v));
+                assertTrue(best[v] > prevP || best[v] == prevP && v > prev);
+                prev = v;
+                prevP = best[v];
+                n++;
+            }
+            assertEquals(n, Arrays.stream(best).filter(p -> p < 50).count());
+        }
+        space.release();
+    }
+
+    private class LabeledPaths extends SimpleShortestPaths {
+        LabeledPaths(LabeledGraph<String, Integer> g, int source) {
+            this(g, source, 0);
+        }
+
+        LabeledPaths(LabeledGraph<String, Integer> g, int source, int dest) {
+            super(g, source, dest);
+            _g = g;
+        }
+
+        @Override
+        protected double getWeight(int u, int v) {
+            return _g.getLabel(u, v);
+        }
+
+        private final LabeledGraph<String, Integer> _g;
+    }
+
+    @Test
+    public void testShortestPaths() {
+        LabeledGraph<String, Integer> g = buildLabeledGraph();
+        double[] dist = new double[g.maxVertex() + 1];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        dist[9] = 0;
+        for (int i = 0; i < g.vertexSize(); i++) {
+            for (int[] e : g.edges()) {
+                dist[e[1]] = Math.min(dist[e[1]],
+                                      dist[e[0]] + g.getLabel(e[0], e[1]));
+            }
+        }
+        LabeledPaths p = new LabeledPaths(g, 9);
+        p.setPaths();
+        assertEquals(Arrays.asList(9, 3, 6, 7), p.pathTo(7));
+        for (int v : g.vertices()) {
+            assertEquals(dist[v], p.getWeight(v), 1e-9);
+        }
+    }
+
+    @Test
+    public void testAStar() {
+        LabeledGraph<String, Integer> g = buildLabeledGraph();
+        double[] toFive = {0, 6, 2, 5, 1, 0, 4, 3, 0, 7};
+        int[] calls = new int[g.maxVertex() + 1];
+        LabeledPaths p = new LabeledPaths(g, 9) {
+            @Override
+            protected double estimatedDistance(int v) {
+                calls[v]++;
+                return toFive[v];
+            }
+        };
+        p.setPaths();
+        assertEquals(Arrays.asList(9, 2, 5), p.pathTo(5));
+        assertEquals(7, p.getWeight(5), 1e-9);
+        for (int v = 1; v <= g.maxVertex(); v++) {
+            assertTrue(calls[v] <= 1);
+        }
+    }
+
+    @Test
+    public void testPathToDest() {
+        LabeledGraph<String, Integer> g = buildLabeledGraph();
+        int[] calls = new int[1];
+        SimpleShortestPaths p = new SimpleShortestPaths(g, 9, 2) {
+            @Override
+            protected double getWeight(int u, int v) {
+                calls[0]++;
+                return g.getLabel(u, v);
+            }
+        };
+        assertEquals(Arrays.asList(9, 2), p.pathTo());
+        int n = calls[0];
+        assertEquals(Arrays.asList(9, 2), p.pathTo());
+        assertEquals(n, calls[0]);
+        assertEquals(5, p.getWeight(2), 1e-9);
+        assertEquals(Double.POSITIVE_INFINITY, p.getWeight(4), 0.0);
+
+        LabeledPaths q = new LabeledPaths(g, 1);
+        assertEquals(null, q.pathTo(9));
+        assertEquals(Arrays.asList(1), q.pathTo(1));
+    }
+
+    @Test
+    public void testBidirectional() {
+        LabeledGraph<String, Integer> g = buildLabeledGraph();
+        Random rand = new Random(3);
+        for (int i = 0; i < 20; i++) {
+            int u = 1 + rand.nextInt(g.maxVertex());
+            int v = 1 + rand.nextInt(g.maxVertex());
+            if (!g.contains(u) || !g.contains(v) || g.contains(u, v)) {
+                continue;
+            }
+            g.add(u, v, 1 + rand.nextInt(9));
+        }
+        for (int s0 : g.vertices()) {
+            LabeledPaths one = new LabeledPaths(g, s0);
+            for (int t : g.vertices()) {
+                BidirectionalShortestPaths two =
+                    new BidirectionalShortestPaths(g, s0, t) {
+                        @Override
+                        protected double getWeight(int u, int v) {
+                            return g.getLabel(u, v);
+                        }
+                    };
+                List<Integer> path = two.pathTo();
+                if (one.pathTo(t) == null) {
+                    assertEquals(null, path);
+                    continue;
+                }
+                double len = 0;
+                for (int k = 1; k < path.size(); k++) {
+                    len += g.getLabel(path.get(k - 1), path.get(k));
+                    assertEquals(path.get(k - 1),
+                                 (Integer) two.getPredecessor(path.get(k)));
+                }
+                assertEquals((Integer) s0, path.get(0));
+                assertEquals((Integer) t, path.get(path.size() - 1));
+                assertEquals(one.getWeight(t), len, 1e-9);
+                assertEquals(one.getWeight(t), two.getWeight(t), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testContractionHierarchy() throws IOException {
+        LabeledGraph<String, Integer> g =
+            new LabeledGraph<>(new DirectedGraph());
+        Random rand = new Random(7);
+        for (int i = 0; i < 60; i++) {
+            g.add();
+        }
+        for (int i = 0; i < 200; i++) {
+            int u = 1 + rand.nextInt(60), v = 1 + rand.nextInt(60);
+            if (u != v && !g.contains(u, v)) {
+                g.add(u, v, 1 + rand.nextInt(9));
+            }
+        }
+        ContractionHierarchy ch =
+            new ContractionHierarchy(g, (u, v) -> g.getLabel(u, v));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ch.write(new DataOutputStream(bytes));
+        ContractionHierarchy copy = ContractionHierarchy.read(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertTrue(copy.matches(g, (u, v) -> g.getLabel(u, v)));
+        assertFalse(copy.matches(g, (u, v) -> g.getLabel(u, v) + 0.5));
+        LabeledGraph<String, Integer> g2 =
+            new LabeledGraph<>(new DirectedGraph());
+        for (int i = 0; i < 60; i++) {
+            g2.add();
+        }
+        int[] e = g.edges().next().clone();
+        for (int[] f : g.edges()) {
+            if (f[0] != e[0] || f[1] != e[1]) {
+                g2.add(f[0], f[1], g.getLabel(f[0], f[1]));
+            }
+        }
+        int u0 = 1, v0 = 2;
+        while (u0 == v0 || g.contains(u0, v0)) {
+            u0 = 1 + rand.nextInt(60);
+            v0 = 1 + rand.nextInt(60);
+        }
+        g2.add(u0, v0, g.getLabel(e[0], e[1]));
+        assertEquals(g.edgeSize(), g2.edgeSize());
+        assertFalse(copy.matches(g2, (u, v) -> g2.getLabel(u, v)));
+        byte[] corrupt = bytes.toByteArray();
+        int targets = 4 + 4 + 8 + (4 + 4 * 61) + (4 + 4 * 62) + 4;
+        corrupt[targets] = 0x7f;
+        try {
+            ContractionHierarchy.read(new DataInputStream(
+                new ByteArrayInputStream(corrupt)));
+            fail("out-of-range vertex accepted");
+        } catch (IOException excp) {
+            /* Expected. */
+        }
+        for (int s0 : g.vertices()) {
+            LabeledPaths one = new LabeledPaths(g, s0);
+            one.setPaths();
+            for (int t : g.vertices()) {
+                for (ContractionHierarchy h : Arrays.asList(ch, copy)) {
+                    List<Integer> path = h.path(s0, t);
+                    if (one.pathTo(t) == null) {
+                        assertEquals(null, path);
+                        assertEquals(Double.POSITIVE_INFINITY,
+                                     h.distance(s0, t), 0);
+                        continue;
+                    }
+                    double len = 0;
+                    for (int k = 1; k < path.size(); k++) {
+                        len += g.getLabel(path.get(k - 1), path.get(k));
+                    }
+                    assertEquals((Integer) s0, path.get(0));
+                    assertEquals((Integer) t, path.get(path.size() - 1));
+                    assertEquals(one.getWeight(t), len, 1e-9);
+                    assertEquals(one.getWeight(t), h.distance(s0, t), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLandmarks() throws IOException {
+        LabeledGraph<String, Integer> g =
+            new LabeledGraph<>(new DirectedGraph());
+        Random rand = new Random(11);
+        for (int i = 0; i < 50; i++) {
+            g.add();
+        }
+        for (int i = 0; i < 180; i++) {
+            int u = 1 + rand.nextInt(50), v = 1 + rand.nextInt(50);
+            if (u != v && !g.contains(u, v)) {
+                g.add(u, v, 1 + rand.nextInt(9));
+            }
+        }
+        for (Landmarks.Selection how : Landmarks.Selection.values()) {
+            Landmarks lm = new Landmarks(g, (u, v) -> g.getLabel(u, v), 4,
+                                         how);
+            assertEquals(4, lm.size());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            lm.write(new DataOutputStream(bytes));
+            Landmarks copy = Landmarks.read(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())));
+            assertTrue(copy.matches(g, (u, v) -> g.getLabel(u, v)));
+            assertFalse(copy.matches(g, (u, v) -> g.getLabel(u, v) * 2));
+            byte[] corrupt = bytes.toByteArray();
+            corrupt[4 + 4 + 8 + 1 + 4] = 0x7f;
+            try {
+                Landmarks.read(new DataInputStream(
+                    new ByteArrayInputStream(corrupt)));
+                fail("out-of-range landmark accepted");
+            } catch (IOException excp) {
+                /* Expected. */
+            }
+            for (int s0 : g.vertices()) {
+                LabeledPaths one = new LabeledPaths(g, s0);
+                one.pathTo(s0);
+                for (int t : g.vertices()) {
+                    assertEquals(lm.lowerBound(s0, t),
+                                 copy.lowerBound(s0, t), 0);
+                    assertTrue(lm.lowerBound(s0, t) <= one.getWeight(t));
+                    LabeledPaths alt = new LabeledPaths(g, s0, t) {
+                        @Override
+                        protected double estimatedDistance(int v) {
+                            return lm.lowerBound(v, getDest());
+                        }
+                    };
+                    List<Integer> path = alt.pathTo();
+                    if (path != null) {
+                        assertEquals(one.getWeight(t), alt.getWeight(t),
+                                     1e-9);
+                    } else {
+                        assertEquals(null, one.pathTo(t));
+                    }
+                }
+            }
+        }
+    }
+
     @Test
     public void randomTest1() {
         DirectedGraph g = new DirectedGraph();
@@ -544,6 +1226,172 @@ public class GraphTest {
         System.out.println("Counts: " + count);
     }
 
+    @Test
+    public void testFrozenGraph() {
+        Graph g0 = buildDirectedGraph();
+        g0.add(4, 4);
+        g0.add(8, 4);
+        Graph g = new FrozenGraph(g0);
+
+        assertEquals(g0.vertexSize(), g.vertexSize());
+        assertEquals(g0.edgeSize(), g.edgeSize());
+        assertEquals(g0.maxVertex(), g.maxVertex());
+        assertEquals(true, g.isDirected());
+        assertEquals(false, g.contains(2));
+        for (int u = 0; u <= g0.maxVertex() + 1; u++) {
+            assertEquals(g0.contains(u), g.contains(u));
+            assertEquals(g0.outDegree(u), g.outDegree(u));
+            assertEquals(g0.inDegree(u), g.inDegree(u));
+            List<Integer> out0 = new ArrayList<>(), out = new ArrayList<>();
+            g0.successors(u).forEachRemaining(out0::add);
+            g.successors(u).forEachRemaining(out::add);
+            assertEquals(out0, out);
+            List<Integer> in0 = new ArrayList<>(), in = new ArrayList<>();
+            g0.predecessors(u).forEachRemaining(in0::add);
+            g.predecessors(u).forEachRemaining(in::add);
+            assertEquals(in0, in);
+            for (int v = 0; v <= g0.maxVertex() + 1; v++) {
+                assertEquals(g0.contains(u, v), g.contains(u, v));
+                assertEquals(g0.edgeId(u, v), g.edgeId(u, v));
+            }
+        }
+        int n = 0;
+        for (int[] e : g.edges()) {
+            assertTrue(g0.contains(e[0], e[1]));
+            n++;
+        }
+        assertEquals(g0.edgeSize(), n);
+
+        Traversal m = new DFSPrint(g, true);
+        m.traverse(9);
+        Traversal m0 = new DFSPrint(g0, true);
+        m0.traverse(9);
+        assertEquals(m0.toString(), m.toString());
+
+        try {
+            g.add();
+            fail("frozen graph accepted a new vertex");
+        } catch (UnsupportedOperationException e) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testEdgeLookup() {
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 1; i <= 40; i++) {
+            g.add();
+        }
+        boolean[][] edge = new boolean[41][41];
+        Random rand = new Random(61);
+        for (int i = 0; i < 4000; i++) {
+            int u = 1 + (i % 3 == 0 ? 0 : rand.nextInt(40));
+            int v = 1 + rand.nextInt(40);
+            if (rand.nextInt(3) == 0) {
+                g.remove(u, v);
+                edge[u][v] = false;
+            } else {
+                g.add(u, v);
+                edge[u][v] = true;
+            }
+        }
+        Graph frozen = new FrozenGraph(g);
+        assertTrue(frozen.outDegree(1) > 8);
+        for (int u = 1; u <= 40; u++) {
+            for (int v = 1; v <= 40; v++) {
+                assertEquals(edge[u][v], g.contains(u, v));
+                assertEquals(edge[u][v], frozen.contains(u, v));
+                assertEquals(g.edgeId(u, v), frozen.edgeId(u, v));
+                assertEquals(edge[u][v], g.edgeId(u, v) != 0);
+            }
+        }
+    }
+
+    @Test
+    public void testVertexReuse() {
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 1; i <= 200; i++) {
+            assertEquals(i, g.add());
+        }
+        for (int i = 200; i > 100; i -= 3) {
+            g.remove(i);
+        }
+        g.remove(7);
+        assertEquals(199, g.maxVertex());
+        g.remove(199);
+        g.remove(198);
+        assertEquals(196, g.maxVertex());
+        assertEquals(7, g.add());
+        assertEquals(101, g.add());
+        assertEquals(104, g.add());
+        for (int i = 1; i <= 200; i++) {
+            g.remove(i);
+        }
+        assertEquals(0, g.maxVertex());
+        assertEquals(0, g.vertexSize());
+        assertEquals(1, g.add());
+    }
+
+    /** Returns the hop distances in G from SOURCES, found serially, with
+     *  -1 for unreached vertices. */
+    private int[] hopDistances(Graph g, int... sources) {
+        int[] hops = new int[g.maxVertex() + 1];
+        Arrays.fill(hops, -1);
+        IntList queue = new IntList();
+        for (int s : sources) {
+            hops[s] = 0;
+            queue.add(s);
+        }
+        for (int k = 0; k < queue.size(); k++) {
+            int u = queue.get(k);
+            for (int v : g.successors(u)) {
+                if (hops[v] < 0) {
+                    hops[v] = hops[u] + 1;
+                    queue.add(v);
+                }
+            }
+        }
+        return hops;
+    }
+
+    @Test
+    public void testParallelBFS() {
+        Random rand = new Random(23);
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 1; i <= 3000; i++) {
+            g.add();
+        }
+        for (int i = 0; i < 24000; i++) {
+            g.add(1 + rand.nextInt(3000), 1 + rand.nextInt(3000));
+        }
+        g.remove(17);
+        g.remove(2999);
+        UndirectedGraph chain = new UndirectedGraph();
+        chain.add();
+        for (int i = 2; i <= 300; i++) {
+            chain.add(chain.add(), i - 1);
+        }
+        for (Graph h : Arrays.asList(g, new FrozenGraph(g), chain)) {
+            ParallelBreadthFirstSearch bfs =
+                new ParallelBreadthFirstSearch(h, Arrays.asList(1, 2));
+            int[] expected = hopDistances(h, 1, 2);
+            int[] hops = bfs.hops();
+            int[] parents = bfs.parents();
+            assertArrayEquals(expected, hops);
+            assertEquals(Arrays.stream(expected).filter(x -> x >= 0).count(),
+                         bfs.reached());
+            for (int v = 0; v < hops.length; v++) {
+                if (hops[v] > 0) {
+                    assertTrue(h.contains(parents[v], v));
+                    assertEquals(hops[v] - 1, hops[parents[v]]);
+                } else {
+                    assertEquals(0, parents[v]);
+                }
+            }
+            assertTrue(h == chain || bfs.bottomUpLevels() > 0);
+        }
+    }
+
     @Test
     public void testNotMyVertex() {
         DirectedGraph g = new DirectedGraph();
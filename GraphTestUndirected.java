@@ -559,6 +559,50 @@ public class GraphTestUndirected {
         System.out.println("Counts: " + count);
     }
 
+    @Test
+    public void testReAddEdge() {
+        UndirectedGraph g = buildUndirectedGraph();
+        int e = g.edgeId(4, 7);
+        assertEquals(e, g.add(7, 4));
+        assertEquals(e, g.add(4, 7));
+        assertEquals(6, g.edgeSize());
+
+        ArrayList<Integer> lst = new ArrayList<>();
+        for (int v : g.predecessors(4)) {
+            lst.add(v);
+        }
+        assertEquals(Arrays.asList(1, 3, 7), lst);
+        g.remove(4, 3);
+        assertEquals(1, g.inDegree(3));
+        assertEquals(2, g.inDegree(4));
+    }
+
+    @Test
+    public void testFrozenGraph() {
+        UndirectedGraph g0 = buildUndirectedGraph();
+        g0.add(7, 7);
+        FrozenGraph g = new FrozenGraph(g0);
+        assertEquals(false, g.isDirected());
+        assertEquals(7, g.edgeSize());
+        assertEquals(g0.edgeId(4, 7), g.edgeId(7, 4));
+        assertEquals(3, g.inDegree(7));
+
+        List<int[]> expected = new ArrayList<int[]>();
+        for (int[] e : g0.edges()) {
+            expected.add(e.clone());
+        }
+        expected.sort(new CompareEdge());
+        List<int[]> actual = new ArrayList<int[]>();
+        for (int[] e : g.edges()) {
+            actual.add(e.clone());
+        }
+        actual.sort(new CompareEdge());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+
     @Test
     public void testNotMyVertex() {
         UndirectedGraph g = new UndirectedGraph();
@@ -0,0 +1,41 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+/** A priority queue of vertices keyed by double priorities, in which
+ *  each vertex appears at most once and its priority may be lowered in
+ *  place.  Dijkstra searches such as ShortestPaths use one as their
+ *  fringe.  Items with equal priorities come out smallest vertex first.
+ *  @author esun
+ */
+interface IndexedHeap {
+
+    /** Returns the number of vertices in me. */
+    int size();
+
+    /** Returns true iff I contain no vertices. */
+    boolean isEmpty();
+
+    /** Returns true iff V is in me. */
+    boolean contains(int v);
+
+    /** Returns the priority of V, which must be in me. */
+    double priority(int v);
+
+    /** Add V, a positive vertex number, with priority PRIORITY.  If V is
+     *  already present, instead lower its priority to PRIORITY if that is
+     *  smaller than its current priority. */
+    void add(int v, double priority);
+
+    /** Returns my vertex with the smallest priority, without removing
+     *  it.  Assumes I am not empty. */
+    int peekMin();
+
+    /** Remove and return my vertex with the smallest priority.  Assumes
+     *  I am not empty. */
+    int removeMin();
+
+    /** Remove all vertices. */
+    void clear();
+
+}
@@ -0,0 +1,100 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** A fringe of vertices kept in a circular int array, removed either in
+ *  the order added (FIFO, for breadth-first traversal) or most recent
+ *  first (LIFO, for depth-first traversal).
+ *  @author esun
+ */
+class IntDeque extends IntFringe {
+
+    /** An empty deque, which is last-in-first-out iff LIFO. */
+    IntDeque(boolean lifo) {
+        _lifo = lifo;
+        _data = new int[INITIAL_CAPACITY];
+    }
+
+    @Override
+    void addInt(int v) {
+        if (_size == _data.length) {
+            int[] data = new int[2 * _data.length];
+            for (int k = 0; k < _size; k += 1) {
+                data[k] = _data[(_head + k) & (_data.length - 1)];
+            }
+            _data = data;
+            _head = 0;
+        }
+        _data[(_head + _size) & (_data.length - 1)] = v;
+        _size += 1;
+    }
+
+    @Override
+    int removeInt() {
+        int v = peekInt();
+        _size -= 1;
+        if (!_lifo) {
+            _head = (_head + 1) & (_data.length - 1);
+        }
+        return v;
+    }
+
+    @Override
+    int peekInt() {
+        if (_size == 0) {
+            throw new NoSuchElementException();
+        }
+        if (_lifo) {
+            return _data[(_head + _size - 1) & (_data.length - 1)];
+        }
+        return _data[_head];
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public void clear() {
+        _head = _size = 0;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new IntIteration() {
+            @Override
+            public boolean hasNext() {
+                return _k < _size;
+            }
+
+            @Override
+            public int nextInt() {
+                if (_k >= _size) {
+                    throw new NoSuchElementException();
+                }
+                int k = _lifo ? _size - 1 - _k : _k;
+                _k += 1;
+                return _data[(_head + k) & (_data.length - 1)];
+            }
+
+            /** Number of items delivered so far. */
+            private int _k;
+        };
+    }
+
+    /** Initial capacity (a power of 2). */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** True iff I deliver my most recently added item first. */
+    private final boolean _lifo;
+    /** Circular buffer of items, whose length is a power of 2. */
+    private int[] _data;
+    /** Index of my oldest item. */
+    private int _head;
+    /** Number of items. */
+    private int _size;
+}
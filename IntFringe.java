@@ -0,0 +1,46 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.AbstractQueue;
+
+/** A Traversal fringe that can add and remove vertices without boxing
+ *  them.  Traversal uses addInt and removeInt when its fringe is an
+ *  IntFringe; the Queue methods are defined in terms of them for other
+ *  clients.
+ *  @author esun
+ */
+abstract class IntFringe extends AbstractQueue<Integer> {
+
+    /** Add vertex V to me. */
+    abstract void addInt(int v);
+
+    /** Remove and return my next vertex.  Assumes I am not empty. */
+    abstract int removeInt();
+
+    /** Returns my next vertex without removing it.  Assumes I am not
+     *  empty. */
+    abstract int peekInt();
+
+    @Override
+    public boolean offer(Integer v) {
+        addInt(v);
+        return true;
+    }
+
+    @Override
+    public Integer poll() {
+        return isEmpty() ? null : removeInt();
+    }
+
+    @Override
+    public Integer peek() {
+        return isEmpty() ? null : peekInt();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+}
@@ -0,0 +1,87 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** An Iteration over ints that can deliver its items without boxing.
+ *  nextInt() returns the next item as an int; next() returns the same
+ *  item as an Integer, so an IntIteration may be used wherever an
+ *  Iteration<Integer> is expected.  For example,
+ *      for (IntIteration it = G.intSuccessors(v); it.hasNext(); ) {
+ *          int w = it.nextInt();
+ *          ...
+ *      }
+ *  @author esun
+ */
+public abstract class IntIteration extends Iteration<Integer> {
+
+    /** Returns my next item.  Throws NoSuchElementException if there
+     *  is none. */
+    public abstract int nextInt();
+
+    @Override
+    public Integer next() {
+        return nextInt();
+    }
+
+    /** Returns an IntIteration that delegates to ITER. */
+    static IntIteration unboxed(Iterator<Integer> iter) {
+        if (iter instanceof IntIteration) {
+            return (IntIteration) iter;
+        }
+        return new IntIteration() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                return iter.next();
+            }
+        };
+    }
+
+    /** Returns an IntIteration over DATA[START .. END). */
+    static IntIteration over(int[] data, int start, int end) {
+        return new IntIteration() {
+            @Override
+            public boolean hasNext() {
+                return _k < end;
+            }
+
+            @Override
+            public int nextInt() {
+                if (_k >= end) {
+                    throw new NoSuchElementException();
+                }
+                _k += 1;
+                return data[_k - 1];
+            }
+
+            /** Index of my next item. */
+            private int _k = start;
+        };
+    }
+
+    /** Returns an IntIteration with no items. */
+    static IntIteration empty() {
+        return EMPTY;
+    }
+
+    /** The (stateless) empty IntIteration. */
+    private static final IntIteration EMPTY = new IntIteration() {
+        @Override
+        public boolean hasNext() {
+            return false;
+        }
+
+        @Override
+        public int nextInt() {
+            throw new NoSuchElementException();
+        }
+    };
+
+}
@@ -0,0 +1,86 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+
+/** A growable list of ints kept in a single primitive array.  Used for
+ *  the adjacency and edge-id lists of GraphObj, so that storing an edge
+ *  costs a few array slots rather than several boxed Integers.
+ *  @author esun
+ */
+class IntList {
+
+    /** An empty list. */
+    IntList() {
+        _data = NO_INTS;
+    }
+
+    /** An empty list with room for CAPACITY items. */
+    IntList(int capacity) {
+        _data = capacity == 0 ? NO_INTS : new int[capacity];
+    }
+
+    /** Returns the number of items in me. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns item K, which must be in [0 .. size()). */
+    int get(int k) {
+        return _data[k];
+    }
+
+    /** Set item K to X.  K must be in [0 .. size()). */
+    void set(int k, int x) {
+        _data[k] = x;
+    }
+
+    /** Append X to me. */
+    void add(int x) {
+        if (_size == _data.length) {
+            int capacity = Math.max(MIN_CAPACITY, _size + (_size >> 1));
+            _data = Arrays.copyOf(_data, capacity);
+        }
+        _data[_size] = x;
+        _size += 1;
+    }
+
+    /** Returns the index of the first occurrence of X in me, or -1 if
+     *  there is none. */
+    int indexOf(int x) {
+        for (int k = 0; k < _size; k += 1) {
+            if (_data[k] == x) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /** Remove item K, shifting the items after it down by one.  The
+     *  remaining items keep their order. */
+    void removeAt(int k) {
+        System.arraycopy(_data, k + 1, _data, k, _size - k - 1);
+        _size -= 1;
+    }
+
+    /** Remove all items, keeping the current capacity. */
+    void clear() {
+        _size = 0;
+    }
+
+    /** Returns an IntIteration over my current items. */
+    IntIteration iteration() {
+        return IntIteration.over(_data, 0, _size);
+    }
+
+    /** Shared empty backing array for lists that have never held items. */
+    private static final int[] NO_INTS = new int[0];
+    /** Capacity allocated on the first add. */
+    private static final int MIN_CAPACITY = 4;
+
+    /** My items, in positions [0 .. _size). */
+    private int[] _data;
+    /** Number of items in me. */
+    private int _size;
+}
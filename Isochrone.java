@@ -0,0 +1,99 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/** The vertices of a graph within a given distance (the radius) of a
+ *  source vertex, with their distances, as for "all locations within 15
+ *  miles of this depot."  They are found by a Dijkstra search that never
+ *  adds to its fringe a vertex farther than the radius, so its cost
+ *  depends on the size of the region, not of the graph.  The vertices
+ *  are kept in order of distance (ties smallest vertex first) in an int
+ *  array, with their distances in a parallel double array.  An
+ *  Isochrone is immutable once built.
+ *  @author esun
+ */
+public class Isochrone {
+
+    /** The vertices of G within distance RADIUS of SOURCE, where edge
+     *  weights are given by WEIGHTS. */
+    public Isochrone(Graph G, EdgeWeighting weights, int source,
+                     double radius) {
+        _source = source;
+        _radius = radius;
+        Traversals.SettleOrder settled =
+            new Traversals.SettleOrder(G, weights, source, radius);
+        IntList vertices = new IntList();
+        double[] distances = new double[INITIAL_CAPACITY];
+        while (settled.hasNext()) {
+            int v = settled.nextInt();
+            if (vertices.size() == distances.length) {
+                distances = Arrays.copyOf(distances, 2 * distances.length);
+            }
+            distances[vertices.size()] = settled.distance();
+            vertices.add(v);
+        }
+        _size = vertices.size();
+        _vertices = new int[_size];
+        for (int k = 0; k < _size; k += 1) {
+            _vertices[k] = vertices.get(k);
+        }
+        _distances = Arrays.copyOf(distances, _size);
+    }
+
+    /** Returns the Isochrones of G of radius RADIUS around each vertex in
+     *  SOURCES, where edge weights are given by WEIGHTS, in the order of
+     *  SOURCES.  The searches run in parallel, so WEIGHTS must allow
+     *  concurrent calls, and G must not change while they run. */
+    public static Isochrone[] reachWithin(Graph G, EdgeWeighting weights,
+                                          int[] sources, double radius) {
+        Isochrone[] result = new Isochrone[sources.length];
+        IntStream.range(0, sources.length).parallel().forEach(i ->
+            result[i] = new Isochrone(G, weights, sources[i], radius));
+        return result;
+    }
+
+    /** Returns my source vertex. */
+    public int source() {
+        return _source;
+    }
+
+    /** Returns my radius. */
+    public double radius() {
+        return _radius;
+    }
+
+    /** Returns the number of vertices within my radius, including my
+     *  source. */
+    public int size() {
+        return _size;
+    }
+
+    /** Returns the vertices within my radius, nearest first.  The array
+     *  is mine, not a copy. */
+    public int[] vertices() {
+        return _vertices;
+    }
+
+    /** Returns the distances from my source of the vertices in
+     *  vertices(), in the same order.  The array is mine, not a copy. */
+    public double[] distances() {
+        return _distances;
+    }
+
+    /** Capacity of the distance array as the search starts. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The source vertex. */
+    private final int _source;
+    /** The largest distance of a vertex included. */
+    private final double _radius;
+    /** Number of vertices included. */
+    private final int _size;
+    /** The vertices included, nearest first. */
+    private final int[] _vertices;
+    /** Distances of the vertices in _vertices. */
+    private final double[] _distances;
+}
@@ -91,6 +91,14 @@ public class LabeledGraph<VL, EL> extends GraphFilter {
 
     @Override
     public void remove(int v) {
+        if (contains(v)) {
+            for (int w : successors(v)) {
+                clearLabel(edgeId(v, w));
+            }
+            for (int u : predecessors(v)) {
+                clearLabel(edgeId(u, v));
+            }
+        }
         super.remove(v);
         if (v < _vlabel.size()) {
             _vlabel.set(v, null);
@@ -102,9 +110,33 @@ public class LabeledGraph<VL, EL> extends GraphFilter {
         int e = edgeId(u, v);
         if (e != 0) {
             super.remove(u, v);
-            if (e < _elabel.size()) {
-                _elabel.set(e, null);
+            clearLabel(e);
+        }
+    }
+
+    @Override
+    int[] compactEdgeIds() {
+        int[] newId = super.compactEdgeIds();
+        if (newId != null) {
+            ArrayList<EL> labels = new ArrayList<>(edgeSize() + 1);
+            for (int e = 1; e < _elabel.size() && e < newId.length; e += 1) {
+                if (newId[e] != 0 && _elabel.get(e) != null) {
+                    expand(labels, newId[e] + 1);
+                    labels.set(newId[e], _elabel.get(e));
+                }
             }
+            _elabel.clear();
+            _elabel.addAll(labels);
+            _elabel.trimToSize();
+        }
+        return newId;
+    }
+
+    /** Remove the label on the edge whose id is E, so that the id may be
+     *  reused for a new, unlabeled edge. */
+    private void clearLabel(int e) {
+        if (e < _elabel.size()) {
+            _elabel.set(e, null);
         }
     }
 
@@ -0,0 +1,397 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/** Landmark distance tables for the ALT ("A*, landmarks, and triangle
+ *  inequality") lower bound on shortest-path weights.  For each of a few
+ *  chosen landmark vertices L, I record d(L, v) and d(v, L) for every
+ *  vertex v.  By the triangle inequality, d(v, t) is at least
+ *  d(L, t) - d(L, v) and at least d(v, L) - d(t, L), and the largest of
+ *  these over all landmarks is a lower bound suitable for
+ *  ShortestPaths.estimatedDistance.  On road maps it is usually far
+ *  tighter than straight-line distance.
+ *
+ *  The tables are kept as floats, vertex by vertex (the K entries for
+ *  vertex v are at [v * K .. v * K + K)), so that one bound reads two
+ *  short runs of memory.  Bounds are reduced slightly to allow for
+ *  float rounding.  For undirected graphs, the two tables are the same
+ *  array.
+ *
+ *  Choosing each landmark depends on the ones before it, so landmarks
+ *  are chosen one at a time, each with one search; the remaining
+ *  searches (the backward tables of directed graphs) and the table
+ *  scans run in parallel.  Landmarks are immutable once built, may be
+ *  shared between threads, and may be written to and read back from a
+ *  stream.
+ *  @author esun
+ */
+public class Landmarks {
+
+    /** Ways of choosing landmarks. */
+    public enum Selection {
+        /** Each landmark is the vertex farthest from those already
+         *  chosen (the first is farthest from an arbitrary vertex). */
+        FARTHEST,
+        /** Each landmark is a leaf of a shortest-path tree from a random
+         *  root, chosen in the subtree where the current landmarks give
+         *  the worst bounds. */
+        AVOID
+    }
+
+    /** K landmarks for G, whose edge weights are given by WEIGHTS, chosen
+     *  by the FARTHEST strategy.  G must not change while the tables are
+     *  being built. */
+    public Landmarks(Graph G, EdgeWeighting weights, int k) {
+        this(G, weights, k, Selection.FARTHEST);
+    }
+
+    /** K landmarks for G, whose edge weights are given by WEIGHTS, chosen
+     *  according to HOW.  Fewer than K are chosen if G has fewer than K
+     *  vertices.  G must not change while the tables are being built. */
+    public Landmarks(Graph G, EdgeWeighting weights, int k,
+                     Selection how) {
+        if (k < 1) {
+            throw new IllegalArgumentException("need at least one landmark");
+        }
+        _n = G.maxVertex() + 1;
+        _fingerprint = Fingerprint.of(G, weights);
+        _k = Math.min(k, G.vertexSize());
+        _landmarks = new int[_k];
+        double[][] from = new double[_k][];
+        Search search = new Search(G, weights);
+        Random random = new Random(SEED);
+        double[] nearest = new double[_n];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+
+        for (int i = 0; i < _k; i += 1) {
+            int L;
+            if (how == Selection.AVOID) {
+                L = avoid(G, search, random, from, i);
+            } else if (i == 0) {
+                search.run(G.intVertices().nextInt(), true);
+                L = farthest(G, search._dist, null);
+            } else {
+                L = farthest(G, nearest, _landmarks);
+            }
+            _landmarks[i] = L;
+            search.run(L, true);
+            from[i] = search._dist.clone();
+            double[] d = from[i];
+            IntStream.range(0, _n).parallel()
+                .forEach(v -> nearest[v] = Math.min(nearest[v], d[v]));
+        }
+
+        double[][] to;
+        if (G.isDirected()) {
+            to = new double[_k][];
+            IntStream.range(0, _k).parallel().forEach(i -> {
+                Search back = new Search(G, weights);
+                back.run(_landmarks[i], false);
+                to[i] = back._dist;
+            });
+        } else {
+            to = from;
+        }
+        _from = table(from);
+        _to = G.isDirected() ? table(to) : _from;
+    }
+
+    /** Landmarks made of previously computed parts. */
+    private Landmarks(int n, long fingerprint, int[] landmarks,
+                      float[] from, float[] to) {
+        _n = n;
+        _fingerprint = fingerprint;
+        _k = landmarks.length;
+        _landmarks = landmarks;
+        _from = from;
+        _to = to;
+    }
+
+    /** Returns the vertex of G that maximizes DIST among those with
+     *  finite DIST, excluding the vertices in CHOSEN (if non-null).  If
+     *  there is none, returns the first vertex not in CHOSEN. */
+    private int farthest(Graph G, double[] dist, int[] chosen) {
+        int best = 0;
+        for (IntIteration it = G.intVertices(); it.hasNext(); ) {
+            int v = it.nextInt();
+            if (chosen != null && indexOf(chosen, v) >= 0) {
+                continue;
+            }
+            if (best == 0
+                || dist[v] != Double.POSITIVE_INFINITY
+                   && (dist[best] == Double.POSITIVE_INFINITY
+                       || dist[v] > dist[best])) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /** Returns landmark number I of G chosen by the AVOID strategy, where
+     *  FROM holds the forward tables of the first I landmarks, using
+     *  SEARCH for searches and RANDOM to choose the root. */
+    private int avoid(Graph G, Search search, Random random,
+                      double[][] from, int i) {
+        int root;
+        do {
+            root = 1 + random.nextInt(_n - 1);
+        } while (!G.contains(root) || indexOf(_landmarks, root, i) >= 0);
+        search.run(root, true);
+        double[] size = new double[_n];
+        int[] bestChild = new int[_n];
+        boolean[] covered = new boolean[_n];
+        for (int k = 0; k < i; k += 1) {
+            covered[_landmarks[k]] = true;
+        }
+        for (int j = search._order.size() - 1; j >= 0; j -= 1) {
+            int v = search._order.get(j);
+            double bound = 0.0;
+            for (int k = 0; k < i; k += 1) {
+                double x = from[k][v] - from[k][root];
+                if (x > bound && x != Double.POSITIVE_INFINITY) {
+                    bound = x;
+                }
+            }
+            size[v] = covered[v] ? 0.0 : size[v] + search._dist[v] - bound;
+            int p = search._pred[v];
+            if (p != 0) {
+                covered[p] |= covered[v];
+                size[p] += size[v];
+                if (bestChild[p] == 0 || size[v] > size[bestChild[p]]) {
+                    bestChild[p] = v;
+                }
+            }
+        }
+        int v = root;
+        while (bestChild[v] != 0 && size[bestChild[v]] > 0.0) {
+            v = bestChild[v];
+        }
+        return v;
+    }
+
+    /** Returns the index of V among the first LIMIT items of A, or -1. */
+    private static int indexOf(int[] a, int v, int limit) {
+        for (int k = 0; k < limit; k += 1) {
+            if (a[k] == v) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the index of V in A, or -1. */
+    private static int indexOf(int[] a, int v) {
+        return indexOf(a, v, a.length);
+    }
+
+    /** Returns the per-landmark distance arrays DIST as one float table,
+     *  vertex by vertex. */
+    private float[] table(double[][] dist) {
+        float[] result = new float[_n * _k];
+        IntStream.range(0, _n).parallel().forEach(v -> {
+            for (int i = 0; i < _k; i += 1) {
+                result[v * _k + i] = (float) dist[i][v];
+            }
+        });
+        return result;
+    }
+
+    /** Returns the number of landmarks. */
+    public int size() {
+        return _k;
+    }
+
+    /** Returns landmark number I, 0 <= I < size(). */
+    public int landmark(int i) {
+        return _landmarks[i];
+    }
+
+    /** Returns true iff I was built from G with edge weights WEIGHTS:
+     *  that is, G has the maximum vertex of the graph I was built from,
+     *  and G and WEIGHTS have its fingerprint, which covers its edges, in
+     *  order, and their weights.  Bounds from tables built for any other
+     *  graph or weights may overestimate distances. */
+    public boolean matches(Graph G, EdgeWeighting weights) {
+        return G.maxVertex() + 1 == _n
+            && Fingerprint.of(G, weights) == _fingerprint;
+    }
+
+    /** Returns a lower bound on the weight of a shortest path from V to T
+     *  (0 if no landmark gives a useful bound). */
+    public double lowerBound(int v, int t) {
+        if (v <= 0 || v >= _n || t <= 0 || t >= _n) {
+            return 0.0;
+        }
+        double best = 0.0;
+        int kv = v * _k, kt = t * _k;
+        for (int i = 0; i < _k; i += 1) {
+            double a = _from[kt + i], b = _from[kv + i];
+            double x = a - b - ROUNDING * (a + b);
+            if (x > best && x != Double.POSITIVE_INFINITY) {
+                best = x;
+            }
+            a = _to[kv + i];
+            b = _to[kt + i];
+            x = a - b - ROUNDING * (a + b);
+            if (x > best && x != Double.POSITIVE_INFINITY) {
+                best = x;
+            }
+        }
+        return best;
+    }
+
+    /** Write me to OUT in a form that read can reconstruct. */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(_n);
+        out.writeLong(_fingerprint);
+        out.writeBoolean(_to != _from);
+        out.writeInt(_k);
+        for (int L : _landmarks) {
+            out.writeInt(L);
+        }
+        writeFloats(out, _from);
+        if (_to != _from) {
+            writeFloats(out, _to);
+        }
+        out.flush();
+    }
+
+    /** Returns landmarks read from IN, as written by write.  Throws
+     *  IOException if IN does not hold well-formed tables whose landmarks
+     *  are within range. */
+    public static Landmarks read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a landmark table");
+        }
+        int n = in.readInt();
+        long fingerprint = in.readLong();
+        boolean directed = in.readBoolean();
+        int[] landmarks = new int[readLength(in)];
+        for (int i = 0; i < landmarks.length; i += 1) {
+            landmarks[i] = in.readInt();
+            if (landmarks[i] < 1 || landmarks[i] >= n) {
+                throw new IOException("corrupt landmark table");
+            }
+        }
+        float[] from = readFloats(in);
+        float[] to = directed ? readFloats(in) : from;
+        if (n < 1 || from.length != (long) n * landmarks.length
+            || to.length != from.length) {
+            throw new IOException("corrupt landmark table");
+        }
+        return new Landmarks(n, fingerprint, landmarks, from, to);
+    }
+
+    /** Write the length of A and then its elements to OUT. */
+    private static void writeFloats(DataOutputStream out, float[] a)
+        throws IOException {
+        out.writeInt(a.length);
+        for (float x : a) {
+            out.writeFloat(x);
+        }
+    }
+
+    /** Returns an array length read from IN, throwing IOException if it
+     *  is negative. */
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("corrupt landmark table");
+        }
+        return length;
+    }
+
+    /** Returns an array read from IN, as written by writeFloats. */
+    private static float[] readFloats(DataInputStream in)
+        throws IOException {
+        float[] a = new float[readLength(in)];
+        for (int k = 0; k < a.length; k += 1) {
+            a[k] = in.readFloat();
+        }
+        return a;
+    }
+
+    /** A complete single-source search over a weighted graph, recording
+     *  distances, predecessors, and the order in which vertices were
+     *  settled. */
+    private static class Search {
+
+        /** A search of G, with edge weights WEIGHTS. */
+        Search(Graph G, EdgeWeighting weights) {
+            _G = G;
+            _weights = weights;
+            _dist = new double[G.maxVertex() + 1];
+            _pred = new int[G.maxVertex() + 1];
+        }
+
+        /** Find the distances from SOURCE if FORWARD, and otherwise the
+         *  distances to SOURCE. */
+        void run(int source, boolean forward) {
+            Arrays.fill(_dist, Double.POSITIVE_INFINITY);
+            Arrays.fill(_pred, 0);
+            _order.clear();
+            _fringe.clear();
+            _dist[source] = 0.0;
+            _fringe.add(source, 0.0);
+            while (!_fringe.isEmpty()) {
+                int u = _fringe.removeMin();
+                _order.add(u);
+                IntIteration it =
+                    forward ? _G.intSuccessors(u) : _G.intPredecessors(u);
+                while (it.hasNext()) {
+                    int w = it.nextInt();
+                    double d = _dist[u]
+                        + (forward ? _weights.getWeight(u, w)
+                           : _weights.getWeight(w, u));
+                    if (d < _dist[w]) {
+                        _dist[w] = d;
+                        _pred[w] = u;
+                        _fringe.add(w, d);
+                    }
+                }
+            }
+        }
+
+        /** The graph searched. */
+        private final Graph _G;
+        /** Its edge weights. */
+        private final EdgeWeighting _weights;
+        /** Distances found by the last search. */
+        private final double[] _dist;
+        /** Predecessors in the last search's shortest-path tree. */
+        private final int[] _pred;
+        /** Vertices in the order the last search settled them. */
+        private final IntList _order = new IntList();
+        /** Vertices waiting to be settled. */
+        private final DaryHeap _fringe = new DaryHeap();
+    }
+
+    /** Seed for the random choices of the AVOID strategy, so that the
+     *  same graph always gets the same landmarks. */
+    private static final long SEED = 0x1a2b3c4dL;
+    /** Relative allowance for float rounding in the stored distances. */
+    private static final double ROUNDING = 1e-6;
+    /** Identifies serialized landmark tables. */
+    private static final int MAGIC = 0x414c5432;
+
+    /** One more than the maximum vertex of the original graph. */
+    private final int _n;
+    /** Fingerprint of the original graph and its weights. */
+    private final long _fingerprint;
+    /** Number of landmarks. */
+    private final int _k;
+    /** The landmark vertices. */
+    private final int[] _landmarks;
+    /** _from[v * _k + i] is the distance from landmark i to v. */
+    private final float[] _from;
+    /** _to[v * _k + i] is the distance from v to landmark i. */
+    private final float[] _to;
+}
@@ -21,6 +21,16 @@ class Location {
         return sqrt(dx * dx + dy * dy);
     }
 
+    /** Returns my x coordinate. */
+    double x() {
+        return _x;
+    }
+
+    /** Returns my y coordinate. */
+    double y() {
+        return _y;
+    }
+
     /** Returns the distance between locations X and Y. */
     public double dist(Location x, Location y) {
         return x.dist(y);
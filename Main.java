@@ -1,11 +1,22 @@
 package trip;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.io.FileNotFoundException;
 
 import java.util.regex.Pattern;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ucb.util.CommandArgs;
 
@@ -19,24 +30,55 @@ public final class Main {
 
     /** Entry point for the CS61B trip program.  RAWARGS may contain options
      *  and targets:
-     *      [ -m MAP ] [ -o OUT ] [ REQUEST ]
-     *  where MAP (default Map) contains the map data, OUT (default standard
-     *  output) takes the result, and REQUEST (default standard input) contains
-     *  the locations along the requested trip.
+     *      [ -m MAP ] [ -o OUT ] [ -c HIERARCHY ] [ -l LANDMARKS ]
+     *          [ -w COMPILED ]
+     *          [ -b REQUESTS | -s PORT | LOCATION LOCATION ... ]
+     *  where MAP (default Map) contains the map data (as text, or as
+     *  compiled by -w), OUT (default standard
+     *  output) takes the result, and the LOCATIONs are the stops along the
+     *  requested trip.  With -b, the program instead makes each of the
+     *  trips listed in the file REQUESTS ("-" for the standard input), one
+     *  comma-separated list of locations per line, reporting them in
+     *  order and separated by blank lines; an erroneous request is
+     *  reported on the standard error and does not stop the others.
+     *  With -s, the program instead runs as a Server, answering trip
+     *  requests on the loopback port PORT until it is stopped.  With -w,
+     *  the map is first written to the file COMPILED in compiled form,
+     *  which loads far faster than text; no trip need then be requested.
+     *  If HIERARCHY is given, trips are found with a contraction
+     *  hierarchy of the map, read from the file HIERARCHY if it holds one
+     *  for this map, and otherwise computed and saved there.  If
+     *  LANDMARKS is given, searches are guided by landmark distance
+     *  tables kept in the file LANDMARKS in the same way.
      */
     public static void main(String... rawArgs) {
         String mapFileName;
         String outFileName;
+        String hierarchyFileName;
+        String landmarkFileName;
+        String requestFileName;
+        String portName;
+        String compiledFileName;
         List<String> targets;
         CommandArgs args =
-            new CommandArgs("-m={0,1} -o={0,1} --={2,}", rawArgs);
+            new CommandArgs("-m={0,1} -o={0,1} -c={0,1} -l={0,1} -b={0,1}"
+                            + " -s={0,1} -w={0,1} --={0,}", rawArgs);
 
-        if (!args.ok()) {
+        int locations = args.get("--").size();
+        if (!args.ok() || args.contains("-b") && args.contains("-s")
+            || (args.contains("-b") || args.contains("-s")
+                ? locations != 0
+                : locations == 1 || locations == 0 && !args.contains("-w"))) {
             usage();
         }
 
         mapFileName = args.getFirst("-m", "Map");
         outFileName = args.getFirst("-o");
+        hierarchyFileName = args.getFirst("-c");
+        landmarkFileName = args.getFirst("-l");
+        requestFileName = args.getFirst("-b");
+        portName = args.getFirst("-s");
+        compiledFileName = args.getFirst("-w");
         targets = args.get("--");
 
         setFiles(outFileName);
@@ -45,13 +87,195 @@ public final class Main {
 
         try {
             trip.readMap(mapFileName);
-            trip.makeTrip(targets);
+            if (compiledFileName != null) {
+                trip.compileMap(compiledFileName);
+            }
+            if (hierarchyFileName != null) {
+                trip.useHierarchy(hierarchyFileName);
+            }
+            if (landmarkFileName != null) {
+                trip.useLandmarks(landmarkFileName);
+            }
+            if (requestFileName != null) {
+                if (!makeTrips(trip, requestFileName)) {
+                    System.exit(1);
+                }
+            } else if (portName != null) {
+                serve(trip, portName);
+            } else if (!targets.isEmpty()) {
+                trip.makeTrip(targets);
+            }
         } catch (IllegalArgumentException excp) {
             System.err.printf("trip: %s%n", excp.getMessage());
             System.exit(1);
         }
     }
 
+    /** Run a Server for TRIP on the loopback port whose number is
+     *  PORTNAME. */
+    private static void serve(Trip trip, String portName) {
+        int port;
+        try {
+            port = Integer.parseInt(portName);
+        } catch (NumberFormatException excp) {
+            error("bad port number: %s", portName);
+            return;
+        }
+        try {
+            new Server(trip).serve(port);
+        } catch (IOException excp) {
+            error("could not serve on port %d: %s", port, excp.getMessage());
+        }
+    }
+
+    /** Make each of the trips requested in the file named REQUESTFILE
+     *  ("-" for the standard input) on TRIP, one comma-separated list of
+     *  locations per nonblank line.  The trips are made concurrently by
+     *  REQUEST_WORKERS, each into its own buffer, and printed on the
+     *  standard output in the order requested, each as soon as it and
+     *  those before it are done.  At most WINDOW requests are read ahead
+     *  of the first one not yet printed, so output starts before the
+     *  whole file is read, and memory does not grow with its length.  A
+     *  failed request is reported on the standard error and does not
+     *  stop the others.  Returns false iff any request failed. */
+    static boolean makeTrips(Trip trip, String requestFile) {
+        ArrayDeque<Future<Request>> pending = new ArrayDeque<>();
+        String readError;
+        int n;
+        boolean ok;
+        readError = null;
+        n = 0;
+        ok = true;
+        try (BufferedReader inp = new BufferedReader(
+                 requestFile.equals("-")
+                 ? new InputStreamReader(System.in)
+                 : new FileReader(requestFile))) {
+            String line;
+            while ((line = inp.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    n += 1;
+                    Request request =
+                        new Request(n, Arrays.asList(LISTSEP.split(line)));
+                    pending.add(REQUEST_WORKERS.submit(() -> {
+                        request.make(trip);
+                        return request;
+                    }));
+                    if (pending.size() >= WINDOW) {
+                        ok &= printRequest(pending, n - pending.size() + 1);
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            readError = excp.getMessage();
+        }
+        while (!pending.isEmpty()) {
+            ok &= printRequest(pending, n - pending.size() + 1);
+        }
+        if (readError != null) {
+            error("could not read requests from %s: %s", requestFile,
+                  readError);
+        }
+        return ok;
+    }
+
+    /** Wait for the first of the requests in PENDING, which is request
+     *  number NUMBER, remove it, and print its output, preceded by a
+     *  blank line unless it is the first request, and any error.  Returns
+     *  false iff it failed. */
+    private static boolean printRequest(ArrayDeque<Future<Request>> pending,
+                                        int number) {
+        Request request;
+        String errorMessage;
+        request = null;
+        try {
+            request = pending.remove().get();
+            errorMessage = request.errorMessage();
+        } catch (ExecutionException excp) {
+            errorMessage = "internal error: " + excp.getCause();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            errorMessage = "interrupted";
+        }
+        if (number > 1) {
+            System.out.println();
+        }
+        if (request != null) {
+            System.out.print(request.output());
+        }
+        System.out.flush();
+        if (errorMessage != null) {
+            System.err.printf("trip: request #%d: %s%n", number,
+                              errorMessage);
+            return false;
+        }
+        return true;
+    }
+
+    /** One trip of a batch, together with its output. */
+    private static class Request {
+
+        /** Request number NUMBER, for a trip to DESTS. */
+        Request(int number, List<String> dests) {
+            _number = number;
+            _dests = dests;
+        }
+
+        /** Make my trip on TRIP, recording its output and any error. */
+        void make(Trip trip) {
+            PrintStream out = new PrintStream(_output, true);
+            try {
+                trip.makeTrip(_dests, out);
+            } catch (IllegalArgumentException excp) {
+                _errorMessage = excp.getMessage();
+            } catch (RuntimeException excp) {
+                _errorMessage = "internal error: " + excp;
+            }
+            out.flush();
+        }
+
+        /** Returns my request number (counting from 1). */
+        int number() {
+            return _number;
+        }
+
+        /** Returns the report printed for my trip. */
+        String output() {
+            return _output.toString();
+        }
+
+        /** Returns the message of the error that ended my trip, or null
+         *  if it succeeded. */
+        String errorMessage() {
+            return _errorMessage;
+        }
+
+        /** My request number. */
+        private final int _number;
+        /** The locations along my trip. */
+        private final List<String> _dests;
+        /** Receives my report. */
+        private final ByteArrayOutputStream _output =
+            new ByteArrayOutputStream();
+        /** Error message, or null. */
+        private String _errorMessage;
+    }
+
+    /** Largest number of requests of a batch in progress or waiting to
+     *  be printed. */
+    private static final int WINDOW =
+        4 * Runtime.getRuntime().availableProcessors();
+
+    /** Threads that make the trips of a batch.  The threads are daemons,
+     *  so they do not keep the program running. */
+    private static final ExecutorService REQUEST_WORKERS =
+        Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r, "trip-request");
+                t.setDaemon(true);
+                return t;
+            });
+
 
     /** Set System.in to read from INFILE, if non-null; otherwise, leaves
      *  System.in unchanged.  Set System.out to go to OUTFILE, if non-null;
@@ -79,7 +303,10 @@ public final class Main {
     /** Print a brief usage message and exit program abnormally. */
     private static void usage() {
         System.err.printf("Usage: java trip.Main [ -m MAPFILE ] [ -o OUTFILE ]"
-                          + " [ REQUESTFILE ]%n");
+                          + " [ -c HIERARCHYFILE ] [ -l LANDMARKFILE ]"
+                          + " [ -w COMPILEDFILE ]"
+                          + " [ -b REQUESTFILE | -s PORT"
+                          + " | LOCATION LOCATION ... ]%n");
         System.exit(1);
     }
 
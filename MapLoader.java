@@ -0,0 +1,269 @@
+package trip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/** The contents of a text map file, read in parallel.  The file is mapped
+ *  into memory and split into byte ranges that begin at line boundaries,
+ *  and the ranges are parsed concurrently.  Location names are then
+ *  resolved, also concurrently, giving each location its index in file
+ *  order and each road the indices of its end points, so that the map
+ *  may be built by adding locations and roads in bulk, in the order the
+ *  serial reader would add them.
+ *
+ *  The parallel reader accepts only files in which each nonblank line
+ *  holds exactly one well-formed entry, no location is defined twice,
+ *  and each road refers only to locations defined before it.  Since
+ *  entries in such a file are the same however it is tokenized, the
+ *  result is exactly that of the serial reader.  Anything else (including
+ *  every erroneous map) is refused, so that the serial reader may read it
+ *  and report its errors in the usual way.
+ *  @author esun
+ */
+class MapLoader {
+
+    /** Returns the contents of the text map file NAME, or null if the
+     *  file cannot be read in parallel (see above). */
+    static MapLoader load(String name) {
+        Chunk[] chunks;
+        try (FileChannel channel = FileChannel.open(Paths.get(name))) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer data =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int[] bounds = split(data, (int) size);
+            chunks = new Chunk[bounds.length - 1];
+            IntStream.range(0, chunks.length).parallel().forEach(c -> {
+                ByteBuffer range = data.duplicate();
+                range.limit(bounds[c + 1]).position(bounds[c]);
+                chunks[c] = Chunk.parse(range.slice());
+            });
+        } catch (IOException | RuntimeException excp) {
+            return null;
+        }
+        for (Chunk chunk : chunks) {
+            if (chunk == null) {
+                return null;
+            }
+        }
+        MapLoader result = new MapLoader(chunks);
+        return result.resolve(chunks) ? result : null;
+    }
+
+    /** Returns the boundaries of the ranges into which to divide the
+     *  first SIZE bytes of DATA: an increasing sequence starting with 0
+     *  and ending with SIZE, in which every other value follows a
+     *  newline. */
+    private static int[] split(ByteBuffer data, int size) {
+        int n = Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        int[] bounds = new int[n + 1];
+        int k;
+        k = 1;
+        for (int c = 1; c < n; c += 1) {
+            int p = Math.max(bounds[k - 1], (int) ((long) size * c / n));
+            while (p < size && data.get(p - 1) != '\n') {
+                p += 1;
+            }
+            if (p > bounds[k - 1] && p < size) {
+                bounds[k] = p;
+                k += 1;
+            }
+        }
+        bounds[k] = size;
+        return Arrays.copyOf(bounds, k + 1);
+    }
+
+    /** A loader for the entries in CHUNKS, whose names are not yet
+     *  resolved. */
+    private MapLoader(Chunk[] chunks) {
+        int locations, roads;
+        locations = roads = 0;
+        for (Chunk chunk : chunks) {
+            chunk._firstLocation = locations;
+            chunk._firstRoad = roads;
+            locations += chunk._locations.size();
+            roads += chunk._roads.size();
+        }
+        _names = new String[locations];
+        _locations = new Location[locations];
+        _roads = new Road[roads];
+        _from = new int[roads];
+        _to = new int[roads];
+    }
+
+    /** Fill in my locations and roads from CHUNKS, resolving the names
+     *  of road ends to location indices.  Returns false if a location is
+     *  defined twice, or a road refers to a location not defined before
+     *  it. */
+    private boolean resolve(Chunk[] chunks) {
+        ConcurrentHashMap<String, Integer> index =
+            new ConcurrentHashMap<>(2 * _locations.length);
+        boolean unique =
+            IntStream.range(0, chunks.length).parallel().allMatch(c -> {
+                Chunk chunk = chunks[c];
+                for (int i = 0; i < chunk._locations.size(); i += 1) {
+                    int k = chunk._firstLocation + i;
+                    _names[k] = chunk._names.get(i);
+                    _locations[k] = chunk._locations.get(i);
+                    if (index.putIfAbsent(_names[k], k) != null) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+        if (!unique) {
+            return false;
+        }
+        return IntStream.range(0, chunks.length).parallel().allMatch(c -> {
+            Chunk chunk = chunks[c];
+            for (int i = 0; i < chunk._roads.size(); i += 1) {
+                int k = chunk._firstRoad + i;
+                int defined = chunk._firstLocation + chunk._before[i];
+                Integer from = index.get(chunk._ends.get(2 * i)),
+                    to = index.get(chunk._ends.get(2 * i + 1));
+                if (from == null || from >= defined
+                    || to == null || to >= defined) {
+                    return false;
+                }
+                _roads[k] = chunk._roads.get(i);
+                _from[k] = from;
+                _to[k] = to;
+            }
+            return true;
+        });
+    }
+
+    /** Returns the number of locations. */
+    int locationSize() {
+        return _locations.length;
+    }
+
+    /** Returns location #K, counting from 0 in file order. */
+    Location location(int k) {
+        return _locations[k];
+    }
+
+    /** Returns the name of location #K. */
+    String locationName(int k) {
+        return _names[k];
+    }
+
+    /** Returns the number of roads. */
+    int roadSize() {
+        return _roads.length;
+    }
+
+    /** Returns road #K, counting from 0 in file order. */
+    Road road(int k) {
+        return _roads[k];
+    }
+
+    /** Returns the number of the location at which road #K starts. */
+    int roadFrom(int k) {
+        return _from[k];
+    }
+
+    /** Returns the number of the location at which road #K ends. */
+    int roadTo(int k) {
+        return _to[k];
+    }
+
+    /** The entries parsed from one range of a map file. */
+    private static class Chunk {
+
+        /** Returns the entries in DATA, or null if some nonblank line of
+         *  it is not exactly one well-formed entry. */
+        static Chunk parse(ByteBuffer data) {
+            Chunk result = new Chunk();
+            MapTokenizer inp = new MapTokenizer(data);
+            int last;
+            last = -1;
+            try {
+                while (inp.hasNext()) {
+                    String kind = inp.next();
+                    int line = inp.line();
+                    if (line == last) {
+                        return null;
+                    }
+                    switch (kind) {
+                    case "L":
+                        String site = inp.next();
+                        double x = inp.nextDouble(), y = inp.nextDouble();
+                        result._names.add(site);
+                        result._locations.add(new Location(site, x, y));
+                        break;
+                    case "R":
+                        String from = inp.next(), name = inp.next();
+                        double length = inp.nextDouble();
+                        Direction dir = Direction.valueOf(inp.next());
+                        String to = inp.next();
+                        if (length < 0) {
+                            return null;
+                        }
+                        result.addRoad(from, new Road(name, dir, length), to);
+                        break;
+                    default:
+                        return null;
+                    }
+                    if (inp.line() != line) {
+                        return null;
+                    }
+                    last = line;
+                }
+            } catch (RuntimeException excp) {
+                return null;
+            }
+            return result;
+        }
+
+        /** Record a ROAD from the location named FROM to the one named
+         *  TO. */
+        private void addRoad(String from, Road road, String to) {
+            if (_roads.size() == _before.length) {
+                _before = Arrays.copyOf(_before, 2 * _before.length);
+            }
+            _before[_roads.size()] = _locations.size();
+            _roads.add(road);
+            _ends.add(from);
+            _ends.add(to);
+        }
+
+        /** Names of my locations, in order. */
+        private final ArrayList<String> _names = new ArrayList<>();
+        /** My locations, in order. */
+        private final ArrayList<Location> _locations = new ArrayList<>();
+        /** My roads, in order. */
+        private final ArrayList<Road> _roads = new ArrayList<>();
+        /** The names of the locations at which my roads start and end:
+         *  road #K runs from _ends.get(2K) to _ends.get(2K+1). */
+        private final ArrayList<String> _ends = new ArrayList<>();
+        /** _before[K] is the number of my locations defined before my
+         *  road #K. */
+        private int[] _before = new int[16];
+        /** Index in the whole file of my first location. */
+        private int _firstLocation;
+        /** Index in the whole file of my first road. */
+        private int _firstRoad;
+    }
+
+    /** Approximate size in bytes of the ranges parsed separately. */
+    private static final int CHUNK_SIZE = 1 << 18;
+
+    /** Location names, by location number. */
+    private final String[] _names;
+    /** Locations, by location number. */
+    private final Location[] _locations;
+    /** Roads, by road number. */
+    private final Road[] _roads;
+    /** _from[K] and _to[K] are the location numbers of the ends of road
+     *  #K. */
+    private final int[] _from, _to;
+}
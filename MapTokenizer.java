@@ -0,0 +1,263 @@
+package trip;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/** A reader of whitespace-separated tokens from a file, for map files.
+ *  It behaves like a java.util.Scanner with the default delimiter for the
+ *  operations readMap uses (hasNext, next, and nextDouble), but reads
+ *  raw bytes through a FileChannel into a reused buffer and parses
+ *  ordinary decimal numbers directly, without regular expressions.
+ *  Tokens are decoded as UTF-8.  As with Scanner, a token that is not a
+ *  number is left unread when nextDouble throws InputMismatchException.
+ *  A tokenizer may also read from a buffer already in memory, such as a
+ *  slice of a mapped file, and reports the line on which each token
+ *  lies.
+ *  @author esun
+ */
+class MapTokenizer implements Closeable {
+
+    /** A tokenizer for the file FILE. */
+    MapTokenizer(File file) throws FileNotFoundException {
+        _channel = new FileInputStream(file).getChannel();
+        _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        _buffer.limit(0);
+    }
+
+    /** A tokenizer for the bytes remaining in DATA, which it consumes. */
+    MapTokenizer(ByteBuffer data) {
+        _channel = null;
+        _buffer = data;
+    }
+
+    /** Returns true iff there is another token. */
+    boolean hasNext() {
+        return fill();
+    }
+
+    /** Returns the next token. */
+    String next() {
+        if (!fill()) {
+            throw new NoSuchElementException();
+        }
+        _tokenRead = true;
+        _tokenLine = _nextLine;
+        return token();
+    }
+
+    /** Returns the number of line terminators that precede the token
+     *  most recently returned by next or nextDouble. */
+    int line() {
+        return _tokenLine;
+    }
+
+    /** Returns the next token as a double.  Throws InputMismatchException,
+     *  without consuming the token, if it is not a number. */
+    double nextDouble() {
+        if (!fill()) {
+            throw new NoSuchElementException();
+        }
+        double x = parseDecimal();
+        if (Double.isNaN(x)) {
+            Scanner s = new Scanner(token());
+            if (!s.hasNextDouble()) {
+                throw new InputMismatchException(token());
+            }
+            x = s.nextDouble();
+        }
+        _tokenRead = true;
+        _tokenLine = _nextLine;
+        return x;
+    }
+
+    /** Returns the value of the current token if it has the form
+     *  [+-]DIGITS[.DIGITS][(e|E)[+-]DIGITS] with at least one digit before
+     *  the exponent, and otherwise NaN.  The result is correctly rounded:
+     *  values with few enough digits are computed exactly from a long
+     *  and a power of ten, and others are passed to Double.parseDouble. */
+    private double parseDecimal() {
+        int k = 0, n = _length;
+        boolean negative = false;
+        if (k < n && (_token[k] == '-' || _token[k] == '+')) {
+            negative = _token[k] == '-';
+            k += 1;
+        }
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean any = false;
+        for (; k < n && isDigit(_token[k]); k += 1) {
+            any = true;
+            if (digits < MAX_EXACT_DIGITS) {
+                mantissa = 10 * mantissa + (_token[k] - '0');
+                digits += mantissa == 0 ? 0 : 1;
+            } else {
+                digits += 1;
+                scale += 1;
+            }
+        }
+        if (k < n && _token[k] == '.') {
+            for (k += 1; k < n && isDigit(_token[k]); k += 1) {
+                any = true;
+                if (digits < MAX_EXACT_DIGITS) {
+                    mantissa = 10 * mantissa + (_token[k] - '0');
+                    digits += mantissa == 0 ? 0 : 1;
+                    scale -= 1;
+                } else {
+                    digits += 1;
+                }
+            }
+        }
+        if (!any) {
+            return Double.NaN;
+        }
+        if (k < n && (_token[k] == 'e' || _token[k] == 'E')) {
+            k += 1;
+            boolean negExp = false;
+            if (k < n && (_token[k] == '-' || _token[k] == '+')) {
+                negExp = _token[k] == '-';
+                k += 1;
+            }
+            int exp = 0;
+            boolean expDigits = false;
+            for (; k < n && isDigit(_token[k]); k += 1) {
+                expDigits = true;
+                exp = Math.min(10 * exp + (_token[k] - '0'), MAX_EXPONENT);
+            }
+            if (!expDigits) {
+                return Double.NaN;
+            }
+            scale += negExp ? -exp : exp;
+        }
+        if (k != n) {
+            return Double.NaN;
+        }
+        double x;
+        if (digits <= MAX_EXACT_DIGITS && Math.abs(scale) < POWERS.length) {
+            x = scale >= 0 ? mantissa * POWERS[scale]
+                : mantissa / POWERS[-scale];
+        } else {
+            x = Math.abs(Double.parseDouble(
+                new String(_token, 0, _length, StandardCharsets.US_ASCII)));
+        }
+        return negative ? -x : x;
+    }
+
+    /** Returns true iff B is an ASCII digit. */
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /** Returns the current token as a String. */
+    private String token() {
+        return new String(_token, 0, _length, StandardCharsets.UTF_8);
+    }
+
+    /** Make the next token the current one, if the current one has been
+     *  read.  Returns true iff there is a current token. */
+    private boolean fill() {
+        if (!_tokenRead && _length > 0) {
+            return true;
+        }
+        _tokenRead = false;
+        _length = 0;
+        int b;
+        do {
+            b = read();
+            if (b == '\n') {
+                _lines += 1;
+            }
+        } while (b >= 0 && isSpace(b));
+        _nextLine = _lines;
+        while (b >= 0 && !isSpace(b)) {
+            if (_length == _token.length) {
+                _token = Arrays.copyOf(_token, 2 * _length);
+            }
+            _token[_length] = (byte) b;
+            _length += 1;
+            b = read();
+        }
+        if (b == '\n') {
+            _lines += 1;
+        }
+        return _length > 0;
+    }
+
+    /** Returns true iff byte B is whitespace (ASCII space, tab, newline,
+     *  vertical tab, form feed, carriage return, or a file, group, record,
+     *  or unit separator, as for Character.isWhitespace). */
+    private static boolean isSpace(int b) {
+        return b == ' ' || b >= '\t' && b <= '\r' || b >= 0x1c && b <= 0x1f;
+    }
+
+    /** Returns the next byte of the file, or -1 at its end. */
+    private int read() {
+        if (!_buffer.hasRemaining()) {
+            if (_channel == null) {
+                return -1;
+            }
+            _buffer.clear();
+            try {
+                int n;
+                do {
+                    n = _channel.read(_buffer);
+                } while (n == 0);
+                _buffer.flip();
+                if (n < 0) {
+                    return -1;
+                }
+            } catch (IOException excp) {
+                throw new UncheckedIOException(excp);
+            }
+        }
+        return _buffer.get() & 0xff;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_channel != null) {
+            _channel.close();
+        }
+    }
+
+    /** Size of the read buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Largest number of significant digits for which a long holds the
+     *  mantissa exactly and the fast conversion is correctly rounded. */
+    private static final int MAX_EXACT_DIGITS = 15;
+    /** Bound on parsed exponents, to avoid overflow. */
+    private static final int MAX_EXPONENT = 100000;
+    /** Powers of ten that are exactly representable as doubles. */
+    private static final double[] POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** The file being read, or null if all input is in _buffer. */
+    private final FileChannel _channel;
+    /** Bytes read from _channel and not yet tokenized. */
+    private final ByteBuffer _buffer;
+    /** The current token, in _token[0 .. _length). */
+    private byte[] _token = new byte[64];
+    /** Length of the current token (0 if there is none). */
+    private int _length;
+    /** True iff the current token has been returned by next or
+     *  nextDouble. */
+    private boolean _tokenRead = true;
+    /** Number of line terminators read so far. */
+    private int _lines;
+    /** Number of line terminators preceding the current token. */
+    private int _nextLine;
+    /** Number of line terminators preceding the token last returned. */
+    private int _tokenLine;
+}
@@ -0,0 +1,240 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/** The hop distances and a breadth-first tree from a set of source
+ *  vertices of a graph to every vertex reachable from them, found by a
+ *  level-synchronous breadth-first search that handles each level in
+ *  parallel.
+ *
+ *  The vertices of each level (the frontier) form a bit set.  A level is
+ *  expanded either top-down, by scanning the successors of each frontier
+ *  vertex and claiming those not yet reached, or bottom-up, by scanning
+ *  the predecessors of each vertex not yet reached until one is found in
+ *  the frontier.  Top-down is cheaper while the frontier is small;
+ *  bottom-up is cheaper once the frontier's edges outnumber, by a factor
+ *  of ALPHA, those of the unreached vertices, since each unreached vertex
+ *  usually stops at its first few predecessors.  The search returns to
+ *  top-down when the frontier is shrinking and smaller than 1/BETA of
+ *  the vertices.  (See Beamer, Asanovic, and Patterson,
+ *  "Direction-Optimizing Breadth-First Search," SC 2012.)
+ *
+ *  Each level runs as a parallel stream over 64-vertex words of the bit
+ *  sets, on the common ForkJoinPool.  In a bottom-up level, each word's
+ *  vertices belong to a single task; in a top-down level, vertices are
+ *  claimed with a compare-and-set on the bit set of reached vertices,
+ *  so each is given exactly one parent.  Which parent a vertex gets when
+ *  several frontier vertices reach it may vary from run to run, but its
+ *  hop distance does not.  The graph must not change during the search.
+ *  @author esun
+ */
+public class ParallelBreadthFirstSearch {
+
+    /** A breadth-first search of G from SOURCE. */
+    public ParallelBreadthFirstSearch(Graph G, int source) {
+        this(G, Arrays.asList(source));
+    }
+
+    /** A breadth-first search of G from all the vertices in SOURCES, each
+     *  of which is at hop distance 0. */
+    public ParallelBreadthFirstSearch(Graph G, Collection<Integer> sources) {
+        int n = G.maxVertex() + 1;
+        int words = (n + WORD - 1) / WORD;
+        _G = G;
+        _hops = new int[n];
+        _parents = new int[n];
+        _seen = new long[words];
+        _reached = new AtomicLongArray(words);
+        Arrays.fill(_hops, -1);
+
+        IntStream.range(0, words).parallel().forEach(i -> {
+            long absent = 0;
+            for (int b = 0; b < WORD; b += 1) {
+                int v = i * WORD + b;
+                if (v >= n || !G.contains(v)) {
+                    absent |= 1L << b;
+                }
+            }
+            _seen[i] = absent;
+            _reached.set(i, absent);
+        });
+        long[] frontier = new long[words];
+        for (int s : sources) {
+            G.checkMyVertex(s);
+            _hops[s] = 0;
+            frontier[s / WORD] |= 1L << s;
+        }
+        for (int i = 0; i < words; i += 1) {
+            _seen[i] |= frontier[i];
+            _reached.set(i, _seen[i]);
+        }
+
+        long unexplored = IntStream.range(0, n).parallel()
+            .mapToLong(v -> G.contains(v) ? G.outDegree(v) : 0).sum();
+        int size = 0;
+        for (int i = 0; i < words; i += 1) {
+            size += Long.bitCount(frontier[i]);
+        }
+        long edges = degrees(frontier);
+        unexplored -= edges;
+        _reachedSize = size;
+
+        boolean bottomUp = false;
+        int previous = 0;
+        for (int level = 1; size > 0; level += 1) {
+            if (!bottomUp && edges > unexplored / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && size < previous
+                       && (long) size * BETA < n) {
+                bottomUp = false;
+            }
+            long[] current = frontier;
+            int hops = level;
+            if (bottomUp) {
+                _bottomUpLevels += 1;
+                IntStream.range(0, words).parallel()
+                    .forEach(i -> bottomUp(current, i, hops));
+            } else {
+                IntStream.range(0, words).parallel()
+                    .forEach(i -> topDown(current, i, hops));
+            }
+            previous = size;
+            frontier = new long[words];
+            size = advance(frontier);
+            edges = degrees(frontier);
+            unexplored -= edges;
+            _reachedSize += size;
+        }
+    }
+
+    /** Returns the hop distance of each vertex from the nearest source,
+     *  indexed by vertex number, or -1 for vertices that are unreachable
+     *  or not in the graph.  The array is mine, not a copy. */
+    public int[] hops() {
+        return _hops;
+    }
+
+    /** Returns the parent of each vertex in the breadth-first tree,
+     *  indexed by vertex number: a predecessor one hop nearer the
+     *  sources, or 0 for sources and unreached vertices.  The array is
+     *  mine, not a copy. */
+    public int[] parents() {
+        return _parents;
+    }
+
+    /** Returns the number of vertices reached, including the sources. */
+    public int reached() {
+        return _reachedSize;
+    }
+
+    /** Returns the number of levels expanded bottom-up. */
+    int bottomUpLevels() {
+        return _bottomUpLevels;
+    }
+
+    /** Expand word I of FRONTIER top-down, giving the unreached
+     *  successors of its vertices hop distance HOPS. */
+    private void topDown(long[] frontier, int i, int hops) {
+        for (long bits = frontier[i]; bits != 0; bits &= bits - 1) {
+            int u = i * WORD + Long.numberOfTrailingZeros(bits);
+            for (IntIteration it = _G.intSuccessors(u); it.hasNext(); ) {
+                int w = it.nextInt();
+                if (_hops[w] < 0 && claim(w)) {
+                    _hops[w] = hops;
+                    _parents[w] = u;
+                }
+            }
+        }
+    }
+
+    /** Expand into word I of the vertices bottom-up, giving each unreached
+     *  vertex there with a predecessor in FRONTIER hop distance HOPS. */
+    private void bottomUp(long[] frontier, int i, int hops) {
+        long found = 0;
+        for (long bits = ~_seen[i]; bits != 0; bits &= bits - 1) {
+            int b = Long.numberOfTrailingZeros(bits);
+            int v = i * WORD + b;
+            for (IntIteration it = _G.intPredecessors(v); it.hasNext(); ) {
+                int u = it.nextInt();
+                if ((frontier[u / WORD] & (1L << u)) != 0) {
+                    _hops[v] = hops;
+                    _parents[v] = u;
+                    found |= 1L << b;
+                    break;
+                }
+            }
+        }
+        if (found != 0) {
+            _reached.set(i, _seen[i] | found);
+        }
+    }
+
+    /** Mark W as reached, returning true iff it was not already. */
+    private boolean claim(int w) {
+        int i = w / WORD;
+        long bit = 1L << w;
+        while (true) {
+            long old = _reached.get(i);
+            if ((old & bit) != 0) {
+                return false;
+            } else if (_reached.compareAndSet(i, old, old | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /** Fill FRONTIER with the vertices reached since the last call, and
+     *  add them to _seen.  Returns their number. */
+    private int advance(long[] frontier) {
+        return IntStream.range(0, frontier.length).parallel().map(i -> {
+            long reached = _reached.get(i);
+            frontier[i] = reached & ~_seen[i];
+            _seen[i] = reached;
+            return Long.bitCount(frontier[i]);
+        }).sum();
+    }
+
+    /** Returns the total out-degree of the vertices in FRONTIER. */
+    private long degrees(long[] frontier) {
+        return IntStream.range(0, frontier.length).parallel()
+            .mapToLong(i -> {
+                long sum = 0;
+                for (long bits = frontier[i]; bits != 0; bits &= bits - 1) {
+                    sum += _G.outDegree(i * WORD
+                                        + Long.numberOfTrailingZeros(bits));
+                }
+                return sum;
+            }).sum();
+    }
+
+    /** Number of vertices in a word of a bit set. */
+    private static final int WORD = Long.SIZE;
+    /** A level is expanded bottom-up once its frontier has more than
+     *  1/ALPHA of the out-edges of the vertices not yet reached. */
+    private static final int ALPHA = 15;
+    /** Bottom-up expansion continues while the frontier is growing or
+     *  holds at least 1/BETA of the vertex numbers. */
+    private static final int BETA = 18;
+
+    /** The graph searched. */
+    private final Graph _G;
+    /** Hop distances, -1 for unreached vertices. */
+    private final int[] _hops;
+    /** Breadth-first tree parents, 0 for sources and unreached vertices. */
+    private final int[] _parents;
+    /** Bit set of the vertices reached before the current level, and of
+     *  the numbers that are not vertices. */
+    private final long[] _seen;
+    /** Bit set of the vertices reached so far, including those claimed in
+     *  the current level, and of the numbers that are not vertices. */
+    private final AtomicLongArray _reached;
+    /** Number of vertices reached. */
+    private int _reachedSize;
+    /** Number of levels expanded bottom-up. */
+    private int _bottomUpLevels;
+}
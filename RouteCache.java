@@ -0,0 +1,131 @@
+package trip;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/** A bounded, thread-safe cache of routes between pairs of map vertices,
+ *  evicting the least recently used route when full.  Concurrent requests
+ *  for the same uncached route are merged: the first computes it, and the
+ *  others wait for its result.  Clearing the cache also discards any
+ *  routes being computed at the time, so that they are not stored.
+ *  @author esun
+ */
+class RouteCache {
+
+    /** A route: a path as an array of vertices, and its length. */
+    static class Route {
+
+        /** A route along PATH (null if there is none) of length
+         *  DISTANCE. */
+        Route(int[] path, double distance) {
+            _path = path;
+            _distance = distance;
+        }
+
+        /** Returns my vertices, starting with the origin, or null if
+         *  there is no route. */
+        int[] path() {
+            return _path;
+        }
+
+        /** Returns my total length (infinite if there is no route). */
+        double distance() {
+            return _distance;
+        }
+
+        /** My vertices, or null. */
+        private final int[] _path;
+        /** My length. */
+        private final double _distance;
+    }
+
+    /** An empty cache holding at most CAPACITY routes. */
+    RouteCache(int capacity) {
+        _capacity = capacity;
+    }
+
+    /** Returns the route from FROM to TO, computing it with SEARCH if it
+     *  is neither cached nor being computed by another thread. */
+    Route get(int from, int to, Supplier<Route> search) {
+        long key = ((long) from << Integer.SIZE) | (to & 0xffffffffL);
+        CompletableFuture<Route> pending;
+        boolean mine;
+        int generation;
+        synchronized (this) {
+            Route route = _routes.get(key);
+            if (route != null) {
+                return route;
+            }
+            pending = _pending.get(key);
+            mine = pending == null;
+            if (mine) {
+                pending = new CompletableFuture<>();
+                _pending.put(key, pending);
+            }
+            generation = _generation;
+        }
+        if (!mine) {
+            try {
+                return pending.join();
+            } catch (CompletionException excp) {
+                if (excp.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) excp.getCause();
+                }
+                throw excp;
+            }
+        }
+
+        Route route;
+        try {
+            route = search.get();
+        } catch (RuntimeException excp) {
+            synchronized (this) {
+                _pending.remove(key, pending);
+            }
+            pending.completeExceptionally(excp);
+            throw excp;
+        }
+        synchronized (this) {
+            _pending.remove(key, pending);
+            if (generation == _generation) {
+                _routes.put(key, route);
+                Iterator<Long> oldest = _routes.keySet().iterator();
+                while (_routes.size() > _capacity) {
+                    oldest.next();
+                    oldest.remove();
+                }
+            }
+        }
+        pending.complete(route);
+        return route;
+    }
+
+    /** Discard all cached routes, and arrange that routes currently being
+     *  computed are not stored. */
+    synchronized void clear() {
+        _routes.clear();
+        _pending.clear();
+        _generation += 1;
+    }
+
+    /** Returns the number of routes cached. */
+    synchronized int size() {
+        return _routes.size();
+    }
+
+    /** Largest number of routes held. */
+    private final int _capacity;
+    /** Cached routes by (from, to) key, least recently used first. */
+    private final LinkedHashMap<Long, Route> _routes =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Routes being computed, by key. */
+    private final Map<Long, CompletableFuture<Route>> _pending =
+        new HashMap<>();
+    /** Number of calls to clear so far. */
+    private int _generation;
+}
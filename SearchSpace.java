@@ -0,0 +1,353 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** Scratch storage for a search over the vertices of a graph: for each
+ *  vertex, two ints, up to two doubles, and some boolean flags, the flags
+ *  packed as bits beside an epoch stamp, all in one record of longs per
+ *  vertex.  Every record is stamped with the epoch in which it was last
+ *  written, and a vertex without a record stamped with the current epoch
+ *  reads as having all its ints 0, its doubles at their slots' defaults,
+ *  and its flags false.  Clearing the space just starts a new epoch, so
+ *  it takes constant time however large the graph, and a vertex's slots
+ *  are reset only when it is first written in an epoch.
+ *
+ *  After each clear, records are kept sparsely, in an open-addressing
+ *  hash table keyed by vertex, so that a search that explores only a
+ *  small part of a large graph uses memory in proportion to what it
+ *  explores.  Once the records written number more than 1/SPARSE_RATIO of
+ *  the vertices, they move to a dense array indexed by vertex, which is
+ *  faster to use.  The dense array is kept, and since its memory is
+ *  already paid for, later searches use it from the start.
+ *
+ *  Spaces are pooled per thread.  A search leases a space from the pool
+ *  of the thread that creates it and either releases it when done or
+ *  holds it as long as the search object is reachable; a space whose
+ *  holder has been garbage collected returns to the pool.  A space is
+ *  used by one search at a time and is not itself synchronized.
+ *  @author esun
+ */
+final class SearchSpace {
+
+    /** Number of int slots per vertex. */
+    static final int INTS = 2;
+    /** Largest number of double slots per vertex. */
+    static final int DOUBLES = 2;
+    /** Number of flags per vertex. */
+    static final int FLAGS = 32;
+
+    /** Returns a cleared space from the calling thread's pool with room
+     *  for vertices [0 .. SIZE) and DOUBLES double slots, leased to HOLDER
+     *  until it is released or HOLDER becomes unreachable.  All double
+     *  slots default to 0. */
+    static SearchSpace lease(Object holder, int size, int doubles) {
+        ArrayList<SearchSpace> pool = POOL.get();
+        SearchSpace result;
+        result = null;
+        for (SearchSpace space : pool) {
+            if (space._record == 2 + doubles && space.isFree()) {
+                result = space;
+                break;
+            }
+        }
+        if (result == null) {
+            result = new SearchSpace(doubles);
+            if (pool.size() < POOL_SIZE) {
+                pool.add(result);
+            }
+        }
+        result._holder = new WeakReference<>(holder);
+        result.reserve(size);
+        Arrays.fill(result._defaults, 0.0);
+        result.clear();
+        return result;
+    }
+
+    /** An empty space with DOUBLES double slots. */
+    private SearchSpace(int doubles) {
+        _record = 2 + doubles;
+        _defaults = new double[doubles];
+        _data = new long[0];
+        _keys = new int[MIN_TABLE];
+        _table = new long[MIN_TABLE * _record];
+        _records = _table;
+        _epoch = 1;
+    }
+
+    /** Return me to my pool.  I must not be used again until leased. */
+    void release() {
+        _holder = null;
+    }
+
+    /** Returns true iff I am not leased to a live holder. */
+    private boolean isFree() {
+        WeakReference<Object> holder = _holder;
+        return holder == null || holder.get() == null;
+    }
+
+    /** Make room for vertices [0 .. SIZE), keeping the current values of
+     *  vertices below my previous size. */
+    void reserve(int size) {
+        _size = Math.max(_size, size);
+        if (_dense) {
+            growData();
+            _records = _data;
+        }
+    }
+
+    /** Reset every vertex to its initial values.  Records are then kept
+     *  sparsely unless a dense array large enough for them already
+     *  exists. */
+    void clear() {
+        _epoch += 1;
+        if (_epoch == 0) {
+            Arrays.fill(_data, 0);
+            Arrays.fill(_table, 0);
+            _epoch = 1;
+        }
+        _dense = _data.length >= _size * _record;
+        _records = _dense ? _data : _table;
+        _count = 0;
+    }
+
+    /** Returns true iff my records are currently in a dense array. */
+    boolean isDense() {
+        return _dense;
+    }
+
+    /** Make the values of double slot S default to VALUE.  Must be
+     *  called before any vertex is written after a lease. */
+    void setDefault(int s, double value) {
+        _defaults[s] = value;
+    }
+
+    /** Returns int slot S of vertex V. */
+    int getInt(int s, int v) {
+        int r = find(v);
+        if (r < 0) {
+            return 0;
+        }
+        return (int) (_records[r + INT_WORD] >>> (s * Integer.SIZE));
+    }
+
+    /** Set int slot S of vertex V to X. */
+    void setInt(int s, int v, int x) {
+        int r = touch(v);
+        int shift = s * Integer.SIZE;
+        _records[r + INT_WORD] = _records[r + INT_WORD] & ~(INT_MASK << shift)
+            | (x & INT_MASK) << shift;
+    }
+
+    /** Returns double slot S of vertex V. */
+    double getDouble(int s, int v) {
+        int r = find(v);
+        if (r < 0) {
+            return _defaults[s];
+        }
+        return Double.longBitsToDouble(_records[r + DOUBLE_WORD + s]);
+    }
+
+    /** Set double slot S of vertex V to X. */
+    void setDouble(int s, int v, double x) {
+        int r = touch(v);
+        _records[r + DOUBLE_WORD + s] = Double.doubleToRawLongBits(x);
+    }
+
+    /** Returns flag F of vertex V. */
+    boolean flag(int f, int v) {
+        int r = find(v);
+        return r >= 0 && (_records[r] & (1L << f)) != 0;
+    }
+
+    /** Set flag F of vertex V. */
+    void setFlag(int f, int v) {
+        int r = touch(v);
+        _records[r] |= 1L << f;
+    }
+
+    /** Returns the index in _records of V's record, or -1 if V has no
+     *  record stamped with the current epoch. */
+    private int find(int v) {
+        if (_dense) {
+            int r = v * _record;
+            return stamp(r) == _epoch ? r : -1;
+        }
+        return probe(v);
+    }
+
+    /** Returns the index in _records of V's record, first creating it,
+     *  with all slots at their initial values, if V has no record stamped
+     *  with the current epoch. */
+    private int touch(int v) {
+        if (_dense) {
+            int r = v * _record;
+            if (stamp(r) != _epoch) {
+                reset(r);
+            }
+            return r;
+        }
+        return insert(v);
+    }
+
+    /** Returns the position of V's record in _table, or -1 if it has
+     *  none.  Kept apart from find so that the dense case stays small
+     *  enough to inline. */
+    private int probe(int v) {
+        int mask = _keys.length - 1;
+        for (int i = hash(v) & mask; ; i = (i + 1) & mask) {
+            int r = i * _record;
+            if (stamp(r) != _epoch) {
+                return -1;
+            } else if (_keys[i] == v) {
+                return r;
+            }
+        }
+    }
+
+    /** Returns the position of V's record in _records, as for touch,
+     *  when records are kept sparsely. */
+    private int insert(int v) {
+        if (v < 0 || v >= _size) {
+            throw new ArrayIndexOutOfBoundsException(v);
+        }
+        int mask = _keys.length - 1;
+        int i;
+        for (i = hash(v) & mask; stamp(i * _record) == _epoch;
+             i = (i + 1) & mask) {
+            if (_keys[i] == v) {
+                return i * _record;
+            }
+        }
+        if ((long) (_count + 1) * SPARSE_RATIO > _size) {
+            makeDense();
+            return touch(v);
+        } else if (2 * (_count + 1) > _keys.length) {
+            growTable();
+            return touch(v);
+        }
+        _count += 1;
+        _keys[i] = v;
+        reset(i * _record);
+        return i * _record;
+    }
+
+    /** Stamp the record at R in _records with the current epoch, and set
+     *  its slots to their initial values. */
+    private void reset(int r) {
+        _records[r] = (long) _epoch << Integer.SIZE;
+        _records[r + INT_WORD] = 0;
+        for (int s = 0; s < _defaults.length; s += 1) {
+            _records[r + DOUBLE_WORD + s] =
+                Double.doubleToRawLongBits(_defaults[s]);
+        }
+    }
+
+    /** Returns the epoch stamped on the record at R in _records. */
+    private int stamp(int r) {
+        return (int) (_records[r] >>> Integer.SIZE);
+    }
+
+    /** Returns the starting table position for vertex V. */
+    private static int hash(int v) {
+        int h = v * HASH_MULTIPLIER;
+        return h ^ (h >>> (Integer.SIZE / 2));
+    }
+
+    /** Move the current records from _table to _data, and use _data from
+     *  now until the next clear. */
+    private void makeDense() {
+        growData();
+        for (int i = 0; i < _keys.length; i += 1) {
+            int r = i * _record;
+            if (stamp(r) == _epoch) {
+                System.arraycopy(_table, r, _data, _keys[i] * _record,
+                                 _record);
+            }
+        }
+        _dense = true;
+        _records = _data;
+    }
+
+    /** Make _data large enough for _size records. */
+    private void growData() {
+        int capacity = _data.length / _record;
+        if (_size > capacity) {
+            int size = Math.max(_size, capacity + capacity / 2);
+            _data = Arrays.copyOf(_data, size * _record);
+        }
+    }
+
+    /** Double the size of _table, moving the current records. */
+    private void growTable() {
+        int[] keys = _keys;
+        long[] table = _table;
+        _keys = new int[2 * keys.length];
+        _table = new long[2 * table.length];
+        _records = _table;
+        int mask = _keys.length - 1;
+        for (int j = 0; j < keys.length; j += 1) {
+            int r = j * _record;
+            if ((int) (table[r] >>> Integer.SIZE) == _epoch) {
+                int i;
+                i = hash(keys[j]) & mask;
+                while (stamp(i * _record) == _epoch) {
+                    i = (i + 1) & mask;
+                }
+                _keys[i] = keys[j];
+                System.arraycopy(table, r, _table, i * _record, _record);
+            }
+        }
+    }
+
+    /** Index within a record of the word holding the ints. */
+    private static final int INT_WORD = 1;
+    /** Index within a record of the first double. */
+    private static final int DOUBLE_WORD = 2;
+    /** Mask selecting an int's bits in a long. */
+    private static final long INT_MASK = 0xffffffffL;
+    /** Records are kept sparsely while they number at most 1/SPARSE_RATIO
+     *  of the vertices. */
+    private static final int SPARSE_RATIO = 16;
+    /** Initial number of entries in _table (a power of 2). */
+    private static final int MIN_TABLE = 64;
+    /** Multiplier for hashing vertex numbers (2**32 / golden ratio). */
+    private static final int HASH_MULTIPLIER = 0x9e3779b9;
+    /** Largest number of spaces kept in a thread's pool. */
+    private static final int POOL_SIZE = 8;
+    /** The spaces belonging to each thread. */
+    private static final ThreadLocal<ArrayList<SearchSpace>> POOL =
+        ThreadLocal.withInitial(ArrayList::new);
+
+    /** The object I am leased to, or null if I am free. */
+    private volatile WeakReference<Object> _holder;
+    /** The current epoch. */
+    private int _epoch;
+    /** Number of longs in the record of a vertex: one holding the
+     *  vertex's epoch stamp (high half) and flags (low half), one holding
+     *  its two ints, and one per double slot. */
+    private final int _record;
+    /** Number of vertex numbers I must hold: [0 .. _size). */
+    private int _size;
+    /** True iff records are now kept in _data. */
+    private boolean _dense;
+    /** The array now holding records: _data or _table. */
+    private long[] _records;
+    /** Dense records, _record longs for each vertex, so that all the
+     *  state of a vertex normally lies in one cache line.  Allocated
+     *  only when first needed. */
+    private long[] _data;
+    /** Sparse records: the record at position I belongs to vertex
+     *  _keys[I] if it is stamped with the current epoch, and otherwise
+     *  position I is empty.  Probing is linear. */
+    private long[] _table;
+    /** Vertex numbers of the records in _table. */
+    private int[] _keys;
+    /** Number of records created in _table since the last clear. */
+    private int _count;
+    /** Default values of the double slots. */
+    private final double[] _defaults;
+}
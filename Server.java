@@ -0,0 +1,336 @@
+package trip;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A resident trip server that answers requests for trips over a map that
+ *  it has read once.  It listens on a TCP port of the loopback interface
+ *  and speaks a line protocol.  Each line from a client is one of
+ *      LOCATION, LOCATION, ...
+ *          Make the trip through the LOCATIONs (separated as by
+ *          Main.LISTSEP) and reply with its report, exactly as
+ *          Trip.makeTrip writes it, followed by either a line "OK" or a
+ *          line "ERROR: MESSAGE".
+ *      STATS
+ *          Reply with the number of trips answered and a histogram of
+ *          their latencies, followed by "OK".
+ *      QUIT
+ *          Close the connection.
+ *  Blank lines are ignored.
+ *
+ *  Each connection is served by its own thread.  At most MAX_CONNECTIONS
+ *  connections are served at once, and at most MAX_WAITING more wait for
+ *  a thread; beyond that, a new connection is told "ERROR: server busy"
+ *  and closed.  So is a waiting connection that gets no thread within
+ *  WAIT_TIMEOUT_MILLIS.  A client that sends nothing for
+ *  IDLE_TIMEOUT_MILLIS is told "ERROR: idle timeout" and disconnected,
+ *  freeing its thread for those waiting.
+ *  @author esun
+ */
+class Server {
+
+    /** A server for trips on TRIP, whose map has been read. */
+    Server(Trip trip) {
+        this(trip, MAX_CONNECTIONS, MAX_WAITING, WAIT_TIMEOUT_MILLIS,
+             IDLE_TIMEOUT_MILLIS);
+    }
+
+    /** A server for trips on TRIP, whose map has been read, that serves
+     *  at most CONNECTIONS connections at once, with at most WAITING more
+     *  waiting up to WAITMILLIS milliseconds for a thread, and that
+     *  disconnects clients idle for IDLEMILLIS milliseconds. */
+    Server(Trip trip, int connections, int waiting, int waitMillis,
+           int idleMillis) {
+        _trip = trip;
+        _waitMillis = waitMillis;
+        _idleMillis = idleMillis;
+        _handlers =
+            new ThreadPoolExecutor(connections, connections,
+                                   IDLE_SECONDS, TimeUnit.SECONDS,
+                                   new ArrayBlockingQueue<>(waiting),
+                                   daemons("trip-connection"));
+        _handlers.allowCoreThreadTimeOut(true);
+        _deadlines =
+            new ScheduledThreadPoolExecutor(1, daemons("trip-deadline"));
+        _deadlines.setKeepAliveTime(IDLE_SECONDS, TimeUnit.SECONDS);
+        _deadlines.allowCoreThreadTimeOut(true);
+        _deadlines.setRemoveOnCancelPolicy(true);
+    }
+
+    /** Returns a factory for daemon threads named NAME. */
+    private static ThreadFactory daemons(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** Accept and serve connections on PORT of the loopback interface
+     *  until the program is stopped. */
+    void serve(int port) throws IOException {
+        try (ServerSocket listener =
+                 new ServerSocket(port, MAX_WAITING,
+                                  InetAddress.getLoopbackAddress())) {
+            System.err.printf("trip: serving on %s%n",
+                              listener.getLocalSocketAddress());
+            serve(listener);
+        }
+    }
+
+    /** Accept and serve connections on LISTENER until it is closed. */
+    void serve(ServerSocket listener) throws IOException {
+        while (true) {
+            Socket client;
+            try {
+                client = listener.accept();
+            } catch (SocketException excp) {
+                if (listener.isClosed()) {
+                    return;
+                }
+                throw excp;
+            }
+            new Connection(client).admit();
+        }
+    }
+
+    /** Tell CLIENT that the server is too busy, and disconnect it. */
+    private void reject(Socket client) {
+        try (Socket s = client) {
+            PrintWriter out = writer(s);
+            out.println("ERROR: server busy");
+            out.flush();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Serve requests from CLIENT until it quits, disconnects, or is idle
+     *  for too long. */
+    private void handle(Socket client) {
+        try (Socket s = client) {
+            s.setSoTimeout(_idleMillis);
+            BufferedReader inp =
+                new BufferedReader(new InputStreamReader(s.getInputStream(),
+                                                         StandardCharsets
+                                                         .UTF_8));
+            PrintWriter out = writer(s);
+            String line;
+            while ((line = readLine(inp, out)) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                } else if (line.equals("QUIT")) {
+                    break;
+                } else if (line.equals("STATS")) {
+                    out.print(_latencies);
+                    out.println("OK");
+                } else {
+                    out.print(answer(line));
+                }
+                out.flush();
+            }
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Returns the next line from INP, or null at its end.  If none
+     *  arrives in time, tell the client through OUT and return null. */
+    private static String readLine(BufferedReader inp, PrintWriter out)
+        throws IOException {
+        try {
+            return inp.readLine();
+        } catch (SocketTimeoutException excp) {
+            out.println("ERROR: idle timeout");
+            out.flush();
+            return null;
+        }
+    }
+
+    /** Returns the complete reply to the trip request REQUEST, and
+     *  records how long it took to compute. */
+    private String answer(String request) {
+        long start = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream report = new PrintStream(bytes, false);
+        String status = "OK";
+        try {
+            _trip.makeTrip(Arrays.asList(Main.LISTSEP.split(request)),
+                           report);
+        } catch (IllegalArgumentException excp) {
+            status = "ERROR: " + excp.getMessage();
+        } catch (RuntimeException excp) {
+            status = "ERROR: internal error: " + excp;
+        }
+        report.println(status);
+        report.flush();
+        _latencies.record(System.nanoTime() - start);
+        return bytes.toString();
+    }
+
+    /** Returns a writer for the output of S. */
+    private static PrintWriter writer(Socket s) throws IOException {
+        return new PrintWriter(new OutputStreamWriter(s.getOutputStream(),
+                                                      StandardCharsets.UTF_8));
+    }
+
+    /** A client connection, which is served by one of my threads or, if
+     *  none is free for too long, turned away. */
+    private class Connection implements Runnable {
+
+        /** A connection to CLIENT. */
+        Connection(Socket client) {
+            _client = client;
+        }
+
+        /** Queue me for a thread, or turn my client away if too many
+         *  connections are already waiting. */
+        void admit() {
+            _expiry = _deadlines.schedule(this::expire, _waitMillis,
+                                          TimeUnit.MILLISECONDS);
+            try {
+                _handlers.execute(this);
+            } catch (RejectedExecutionException excp) {
+                _expiry.cancel(false);
+                reject(_client);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (_claimed.compareAndSet(false, true)) {
+                _expiry.cancel(false);
+                handle(_client);
+            }
+        }
+
+        /** Turn my client away if no thread has started serving it. */
+        private void expire() {
+            if (_claimed.compareAndSet(false, true)) {
+                _handlers.remove(this);
+                reject(_client);
+            }
+        }
+
+        /** The connected client. */
+        private final Socket _client;
+        /** True once a thread has served or turned away my client. */
+        private final AtomicBoolean _claimed = new AtomicBoolean();
+        /** The pending call to expire. */
+        private volatile Future<?> _expiry;
+    }
+
+    /** A concurrent histogram of durations, in buckets whose bounds are
+     *  powers of 2 microseconds. */
+    static class LatencyHistogram {
+
+        /** Record a duration of NANOS nanoseconds. */
+        void record(long nanos) {
+            long micros = Math.max(1, nanos / NANOS_PER_MICRO);
+            int bucket = Math.min(BUCKETS - 1,
+                                  Long.SIZE - 1
+                                  - Long.numberOfLeadingZeros(micros));
+            _counts.incrementAndGet(bucket);
+        }
+
+        /** Returns the number of durations recorded. */
+        long count() {
+            long total = 0;
+            for (int b = 0; b < BUCKETS; b += 1) {
+                total += _counts.get(b);
+            }
+            return total;
+        }
+
+        /** Returns an upper bound, in microseconds, on the smallest
+         *  duration that is at least as long as the fraction P of the
+         *  durations recorded, or 0 if there are none. */
+        long percentile(double p) {
+            long total = count();
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b += 1) {
+                seen += _counts.get(b);
+                if (total > 0 && seen >= p * total) {
+                    return 1L << (b + 1);
+                }
+            }
+            return 0;
+        }
+
+        /** Returns a report of my counts: a line with the total and some
+         *  percentiles, then one line "< BOUND us: COUNT" for each
+         *  nonempty bucket. */
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            result.append(String.format("trips: %d  p50 < %d us  p90 < %d us"
+                                        + "  p99 < %d us%n",
+                                        count(), percentile(0.5),
+                                        percentile(0.9), percentile(0.99)));
+            for (int b = 0; b < BUCKETS; b += 1) {
+                long n = _counts.get(b);
+                if (n > 0) {
+                    result.append(String.format("< %d us: %d%n",
+                                                1L << (b + 1), n));
+                }
+            }
+            return result.toString();
+        }
+
+        /** Number of buckets; the last holds all longer durations. */
+        private static final int BUCKETS = 40;
+        /** Nanoseconds in a microsecond. */
+        private static final long NANOS_PER_MICRO = 1000;
+
+        /** _counts[b] is the number of durations of at least 2**b and
+         *  less than 2**(b+1) microseconds. */
+        private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+    }
+
+    /** Largest number of connections served at once. */
+    static final int MAX_CONNECTIONS =
+        4 * Runtime.getRuntime().availableProcessors();
+    /** Largest number of connections waiting to be served. */
+    static final int MAX_WAITING = 64;
+    /** Milliseconds a connection may wait for a thread. */
+    static final int WAIT_TIMEOUT_MILLIS = 5 * 1000;
+    /** Milliseconds a client may wait before sending its next line. */
+    static final int IDLE_TIMEOUT_MILLIS = 30 * 1000;
+    /** Seconds after which an idle connection thread exits. */
+    private static final long IDLE_SECONDS = 60;
+
+    /** The trip planner, with its map. */
+    private final Trip _trip;
+    /** Milliseconds a connection may wait for a thread. */
+    private final int _waitMillis;
+    /** Milliseconds a client may wait before sending its next line. */
+    private final int _idleMillis;
+    /** Threads serving connections, with their admission queue. */
+    private final ThreadPoolExecutor _handlers;
+    /** Turns away connections that wait too long for a thread. */
+    private final ScheduledThreadPoolExecutor _deadlines;
+    /** Latencies of the trips answered. */
+    private final LatencyHistogram _latencies = new LatencyHistogram();
+}
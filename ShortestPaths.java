@@ -2,17 +2,21 @@ package graph;
 
 /* See restrictions in Graph.java. */
 
-import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.TreeSet;
 import java.util.LinkedList;
-import java.util.Comparator;
 
 /** The shortest paths through an edge-weighted graph.
  *  By overrriding methods getWeight, setWeight, getPredecessor, and
  *  setPredecessor, the client can determine how to represent the weighting
  *  and the search results.  By overriding estimatedDistance, clients
  *  can search for paths to specific destinations using A* search.
+ *
+ *  Each instance performs its search at most once, on the first call of
+ *  pathTo, and later calls reuse the result.  When there is a
+ *  destination, the search stops as soon as the destination's weight is
+ *  final, so only the destination and the vertices settled before it
+ *  have final weights and predecessors.
  *  @author esun
  */
 public abstract class ShortestPaths {
@@ -29,14 +33,48 @@ public abstract class ShortestPaths {
         _dest = dest;
     }
 
-    /** Initialize the shortest paths.  Must be called before using
-     *  getWeight, getPredecessor, and pathTo. */
+    /** Initialize the shortest paths, discarding the results of any
+     *  previous search.  Called by pathTo if it has not already been
+     *  called. */
     public void setPaths() {
+        initialize();
+        setWeight(getSource(), 0);
+        _initialized = true;
+        _searched = false;
+    }
+
+    /** Set the weights of all vertices to infinity and their
+     *  predecessors to 0.  This default implementation sets each vertex
+     *  in turn; representations that can do so in constant time should
+     *  override it. */
+    void initialize() {
         for (int i = 1; i <= _G.maxVertex(); i++) {
             setWeight(i, Double.POSITIVE_INFINITY);
             setPredecessor(i, 0);
         }
-        setWeight(getSource(), 0);
+    }
+
+    /** Perform the search from the source, unless it has been done since
+     *  the last call of setPaths.  The search's working storage is
+     *  leased from the thread's pool of SearchSpaces and returned when
+     *  the search ends. */
+    private void search() {
+        if (!_initialized) {
+            setPaths();
+        }
+        if (!_searched) {
+            _estimates = SearchSpace.lease(this, _G.maxVertex() + 1, 1);
+            _estimates.setDefault(ESTIMATE, Double.NaN);
+            Traversal m = new Dijkstras(_G);
+            try {
+                m.traverse(getSource());
+            } finally {
+                m.release();
+                _estimates.release();
+                _estimates = null;
+            }
+            _searched = true;
+        }
     }
 
     /** Returns the starting vertex. */
@@ -65,22 +103,36 @@ public abstract class ShortestPaths {
 
     /** Returns an estimated heuristic weight of the shortest path from vertex
      *  V to the destination vertex (if any).  This is assumed to be less
-     *  than the actual weight, and is 0 by default. */
+     *  than the actual weight, and is 0 by default.  The search orders its
+     *  fringe by getWeight(V) + estimatedDistance(V), calling
+     *  estimatedDistance at most once per vertex per search. */
     protected double estimatedDistance(int v) {
         return 0.0;
     }
 
+    /** Returns estimatedDistance(V), computing it only on the first
+     *  request for V in the current search. */
+    private double estimate(int v) {
+        double h = _estimates.getDouble(ESTIMATE, v);
+        if (Double.isNaN(h)) {
+            h = estimatedDistance(v);
+            _estimates.setDouble(ESTIMATE, v, h);
+        }
+        return h;
+    }
+
     /** Returns the current weight of edge (U, V) in the graph.  If (U, V) is
      *  not in the graph, returns positive infinity. */
     protected abstract double getWeight(int u, int v);
 
     /** Returns a list of vertices starting at _source and ending
-     *  at V that represents a shortest path to V.  Invalid if there is a
-     *  destination vertex other than V. */
+     *  at V that represents a shortest path to V, or null if V cannot be
+     *  reached.  Invalid if there is a destination vertex other than V. */
     public List<Integer> pathTo(int v) {
-
-        Traversal m = new Dijkstras(_G);
-        m.traverse(getSource());
+        search();
+        if (v != getSource() && getPredecessor(v) == 0) {
+            return null;
+        }
 
         LinkedList<Integer> shortestPath = new LinkedList<>();
         while (v != getSource()) {
@@ -103,51 +155,63 @@ public abstract class ShortestPaths {
     private final int _source;
     /** The target vertex. */
     private final int _dest;
-
-    /** Class PQ.*/
-    private class PQ extends ArrayDeque<Integer> {
+    /** Cached values of estimatedDistance for the current search, in
+     *  double slot ESTIMATE, NaN where not yet computed, and the positions
+     *  of the fringe, in int slot 0. */
+    private SearchSpace _estimates;
+    /** Double slot of _estimates holding the estimates. */
+    private static final int ESTIMATE = 0;
+    /** Int slot of _estimates holding the fringe's heap positions. */
+    private static final int POSITION = 0;
+    /** True iff setPaths has been called. */
+    private boolean _initialized;
+    /** True iff the search has been done since the last setPaths. */
+    private boolean _searched;
+
+    /** The fringe of a Dijkstras traversal: vertices keyed by their current
+     *  weights plus their estimated distances to the destination in a
+     *  DaryHeap, so that a vertex whose weight drops while it is waiting
+     *  is moved up rather than added again.  The heap keeps its positions
+     *  in the search's SearchSpace. */
+    private class PQ extends IntFringe {
 
         /** PQ Constructor.*/
         PQ() {
-            _treeSet = new TreeSet<>(new Comparator<Integer>() {
-                @Override
-                public int compare(Integer u, Integer v) {
-                    if (u == v) {
-                        return 0;
-                    }
-                    double uDist = getWeight(u);
-                    double vDist = getWeight(v);
-                    int a = Double.compare(uDist, vDist);
-                    if (a == 0) {
-                        return Integer.compare(u, v);
-                    }
-                    return a;
-                }
-            });
+            _heap = new DaryHeap(_estimates, POSITION);
+        }
+
+        @Override
+        void addInt(int v) {
+            _heap.add(v, getWeight(v) + estimate(v));
+        }
+
+        @Override
+        int removeInt() {
+            return _heap.removeMin();
         }
 
         @Override
-        public boolean add(Integer a) {
-            return _treeSet.add(a);
+        int peekInt() {
+            return _heap.peekMin();
         }
 
         @Override
-        public Integer remove() {
-            return _treeSet.pollFirst();
+        public int size() {
+            return _heap.size();
         }
 
         @Override
         public void clear() {
-            _treeSet.clear();
+            _heap.clear();
         }
 
         @Override
-        public boolean isEmpty() {
-            return _treeSet.isEmpty();
+        public Iterator<Integer> iterator() {
+            throw new UnsupportedOperationException("fringe is not iterable");
         }
 
-        /** TreeSet _treeSet.*/
-        private TreeSet<Integer> _treeSet;
+        /** Vertices waiting to be settled. */
+        private final DaryHeap _heap;
     }
 
     /** Dijkstras class.*/
@@ -161,18 +225,7 @@ public abstract class ShortestPaths {
 
         @Override
         protected boolean visit(int v) {
-            _ret += Integer.toString(v) + " ";
-            return true;
-        }
-
-        /** String _ret.*/
-        private String _ret = new String();
-
-        /** To String method.
-         * @return String
-         * */
-        public String toString() {
-            return _ret;
+            return v != getDest();
         }
 
         @Override
@@ -4,7 +4,10 @@ package graph;
 
 /** A partial implementation of ShortestPaths that contains the weights of
  *  the vertices and the predecessor edges.   The client needs to
- *  supply only the two-argument getWeight method.
+ *  supply only the two-argument getWeight method.  The weights and
+ *  predecessors are kept in a SearchSpace leased from the pool of the
+ *  creating thread, so that setPaths takes constant time and a new
+ *  instance usually reuses the storage of one no longer in use.
  *  @author esun
  */
 public abstract class SimpleShortestPaths extends ShortestPaths {
@@ -17,8 +20,43 @@ public abstract class SimpleShortestPaths extends ShortestPaths {
     /** A shortest path in G from SOURCE to DEST. */
     public SimpleShortestPaths(Graph G, int source, int dest) {
         super(G, source, dest);
-        _weights = new double[G.maxVertex() + 1];
-        _back = new int[G.maxVertex() + 1];
+        _size = G.maxVertex() + 1;
+    }
+
+    /** Returns the SearchSpace holding my weights and predecessors,
+     *  leasing one if I have none.  In a new space, all ints are 0 and
+     *  all doubles infinite; the slots other than WEIGHT and BACK are
+     *  free for subclasses. */
+    SearchSpace space() {
+        if (_space == null) {
+            _space = SearchSpace.lease(this, _size, doubleSlots());
+            for (int s = 0; s < doubleSlots(); s += 1) {
+                _space.setDefault(s, Double.POSITIVE_INFINITY);
+            }
+        }
+        return _space;
+    }
+
+    /** Returns the number of double slots needed in space(): 1 (for
+     *  WEIGHT) unless a subclass needs more. */
+    int doubleSlots() {
+        return 1;
+    }
+
+    /** Return my SearchSpace to its pool.  My weights are then all
+     *  infinite and my predecessors 0 until they are next set. */
+    void release() {
+        if (_space != null) {
+            _space.release();
+            _space = null;
+        }
+    }
+
+    @Override
+    void initialize() {
+        if (_space != null) {
+            _space.clear();
+        }
     }
 
     /** Returns the current weight of edge (U, V) in the graph.  If (U, V) is
@@ -28,26 +66,34 @@ public abstract class SimpleShortestPaths extends ShortestPaths {
 
     @Override
     public double getWeight(int v) {
-        return _weights[v];
+        return _space == null ? Double.POSITIVE_INFINITY
+            : _space.getDouble(WEIGHT, v);
     }
 
     @Override
     protected void setWeight(int v, double w) {
-        _weights[v] = w;
+        space().setDouble(WEIGHT, v, w);
     }
 
     @Override
     public int getPredecessor(int v) {
-        return _back[v];
+        return _space == null ? 0 : _space.getInt(BACK, v);
     }
 
     @Override
     protected void setPredecessor(int v, int u) {
-        _back[v] = u;
+        space().setInt(BACK, v, u);
     }
 
-    /** Weights. */
-    private double[] _weights;
-    /** Back representation. */
-    private int[] _back;
+    /** Number of vertex slots: one more than my graph's largest vertex
+     *  when I was created. */
+    private final int _size;
+    /** Weights (double slot WEIGHT) and predecessors (int slot BACK), or
+     *  null if I hold no SearchSpace. */
+    private SearchSpace _space;
+
+    /** Double slot of _space holding weights. */
+    static final int WEIGHT = 0;
+    /** Int slot of _space holding predecessors. */
+    static final int BACK = 0;
 }
@@ -4,7 +4,6 @@ package graph;
 
 import java.util.Queue;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.Arrays;
 
 /** Implements a generalized traversal of a graph.  At any given time,
@@ -24,6 +23,13 @@ import java.util.Arrays;
  *
  *  Traversals may be interrupted or restarted, remembering the previously
  *  marked vertices.
+ *
+ *  Successors are read through Graph.intSuccessors, and when the fringe
+ *  is an IntFringe, vertices are added to and removed from it without
+ *  boxing, so that the main loop allocates nothing per edge.  The
+ *  per-vertex state lives in a pooled SearchSpace, leased on the first
+ *  traversal and reused by later ones, so that restarting a traversal
+ *  neither allocates nor initializes anything proportional to the graph.
  *  @author esun
  */
 public abstract class Traversal {
@@ -32,28 +38,46 @@ public abstract class Traversal {
     protected Traversal(Graph G, Queue<Integer> fringe) {
         _G = G;
         _fringe = fringe;
+        _intFringe = fringe instanceof IntFringe ? (IntFringe) fringe : null;
     }
 
-    /** Unmark all vertices in the graph. */
+    /** Unmark all vertices in the graph.  Takes constant time, apart
+     *  from clearing the fringe, once my SearchSpace is large enough. */
     public void clear() {
-        _marked = new boolean[_G.maxVertex() + 1];
-        _prec = new int[_G.maxVertex() + 1];
-        _blocked = new int[_G.maxVertex() + 1];
-        _posted = new boolean[_G.maxVertex() + 1];
+        if (_space == null) {
+            _space = SearchSpace.lease(this, _G.maxVertex() + 1, 0);
+        } else {
+            _space.reserve(_G.maxVertex() + 1);
+            _space.clear();
+        }
         _fringe.clear();
     }
 
+    /** Returns the graph I traverse. */
+    Graph graph() {
+        return _G;
+    }
+
+    /** Return my SearchSpace to its pool.  Until the next clear or
+     *  traverse, which lease another, I must not be used. */
+    void release() {
+        if (_space != null) {
+            _space.release();
+            _space = null;
+        }
+    }
+
     /** Initialize the fringe to V0 and perform a traversal. */
     public void traverse(Collection<Integer> V0) {
         clear();
         for (int i : V0) {
-            _fringe.add(i);
+            addToFringe(i);
         }
 
-        LinkedList<Integer> reverse = new LinkedList<Integer>();
+        IntList succs = new IntList();
 
         while (!_fringe.isEmpty()) {
-            int u = _fringe.remove();
+            int u = removeFromFringe();
             int eofVisit = 0;
 
             if (!marked(u)) {
@@ -61,43 +85,61 @@ public abstract class Traversal {
                 if (!visit(u)) {
                     return;
                 }
-                reverse.clear();
-                for (int w : _G.successors(u)) {
-                    if (reverseSuccessors(u)) {
-                        reverse.addFirst(w);
-                    } else {
-                        reverse.add(w);
-                    }
+                succs.clear();
+                for (IntIteration it = _G.intSuccessors(u); it.hasNext(); ) {
+                    succs.add(it.nextInt());
                 }
-                for (int w : reverse) {
+                boolean reverse = reverseSuccessors(u);
+                for (int k = 0; k < succs.size(); k += 1) {
+                    int w = succs.get(reverse ? succs.size() - 1 - k : k);
                     if (processSuccessor(u, w)) {
-                        _blocked[u]++;
-                        _prec[w] = u;
+                        _space.setInt(BLOCKED, u,
+                                      _space.getInt(BLOCKED, u) + 1);
+                        _space.setInt(PREC, w, u);
                         eofVisit++;
-                        _fringe.add(w);
+                        addToFringe(w);
                     }
                 }
             }
             if (eofVisit == 0) {
-                while (_blocked[u] == 0) {
-                    if (!_posted[u] && shouldPostVisit(u)) {
-                        _posted[u] = true;
+                while (_space.getInt(BLOCKED, u) == 0) {
+                    if (!_space.flag(POSTED, u) && shouldPostVisit(u)) {
+                        _space.setFlag(POSTED, u);
                         if (!postVisit(u)) {
                             return;
                         }
                     }
-                    if (_prec[u] == 0) {
+                    int prec = _space.getInt(PREC, u);
+                    if (prec == 0) {
                         break;
                     }
-                    u = (_prec[u] > 0) ? _prec[u] : u;
-                    if (_blocked[u] > 0) {
-                        _blocked[u]--;
+                    u = prec > 0 ? prec : u;
+                    int blocked = _space.getInt(BLOCKED, u);
+                    if (blocked > 0) {
+                        _space.setInt(BLOCKED, u, blocked - 1);
                     }
                 }
             }
         }
     }
 
+    /** Add V to the fringe. */
+    private void addToFringe(int v) {
+        if (_intFringe != null) {
+            _intFringe.addInt(v);
+        } else {
+            _fringe.add(v);
+        }
+    }
+
+    /** Remove and return the next vertex from the (non-empty) fringe. */
+    private int removeFromFringe() {
+        if (_intFringe != null) {
+            return _intFringe.removeInt();
+        }
+        return _fringe.remove();
+    }
+
     /** Initialize the fringe to { V0 } and perform a traversal. */
     public void traverse(int v0) {
         traverse(Arrays.<Integer>asList(v0));
@@ -105,12 +147,12 @@ public abstract class Traversal {
 
     /** Returns true iff V has been marked. */
     protected boolean marked(int v) {
-        return _marked[v];
+        return _space.flag(MARKED, v);
     }
 
     /** Mark vertex V. */
     protected void mark(int v) {
-        _marked[v] = true;
+        _space.setFlag(MARKED, v);
     }
 
     /** Perform a visit on vertex V.  Returns false iff the traversal is to
@@ -141,9 +183,10 @@ public abstract class Traversal {
      *  default implementation simply processes each successor using
      *  processSuccessor. */
     protected void processSuccessors(int u) {
-        for (int v : _G.successors(u)) {
+        for (IntIteration it = _G.intSuccessors(u); it.hasNext(); ) {
+            int v = it.nextInt();
             if (processSuccessor(u, v)) {
-                _fringe.add(v);
+                addToFringe(v);
             }
         }
     }
@@ -158,22 +201,21 @@ public abstract class Traversal {
     private final Graph _G;
     /** The fringe. */
     protected final Queue<Integer> _fringe;
-
-    /**
-     * @param _marked Array of marked nodes.
-     */
-    private boolean[] _marked;
-    /**
-     * @param _blocked Array of blocked nodes.
-     */
-    private int[] _blocked;
-    /**
-     * @param _prec Array of predecesors.
-     */
-    private int[] _prec;
-
-    /**
-     * @param _posted Array of posted nodes.
-     */
-    private boolean[] _posted;
+    /** _fringe, if it is an IntFringe, and otherwise null. */
+    private final IntFringe _intFringe;
+
+    /** Per-vertex state of the current traversal: for each vertex, its
+     *  predecessor (PREC), the number of its successors added to the fringe
+     *  and not yet finished (BLOCKED), and whether it is marked (MARKED)
+     *  and post-visited (POSTED).  Null until the first clear. */
+    private SearchSpace _space;
+
+    /** Int slot of _space holding predecessors. */
+    private static final int PREC = 0;
+    /** Int slot of _space holding counts of unfinished successors. */
+    private static final int BLOCKED = 1;
+    /** Flag of _space marking vertices. */
+    private static final int MARKED = 0;
+    /** Flag of _space marking post-visited vertices. */
+    private static final int POSTED = 1;
 }
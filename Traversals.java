@@ -0,0 +1,331 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+
+/** Lazy iterations over the vertices of a graph in the orders of common
+ *  traversals from a source vertex: breadth-first, depth-first preorder
+ *  and postorder, and the order in which Dijkstra's algorithm settles
+ *  vertices.  Unlike a Traversal, whose traverse method runs to the end
+ *  unless a callback stops it, these do the work of the traversal only
+ *  as the client asks for more vertices: a vertex's edges are examined
+ *  only when the vertex after it is requested.  So a client that takes
+ *  the first few vertices and abandons the iteration (for example, to
+ *  find the N locations nearest a point) pays only for what it takes.
+ *
+ *  As with Graph.successors and Graph.intSuccessors, each order comes in
+ *  two forms, one returning an Iteration<Integer> and one an
+ *  IntIteration, which delivers vertices without boxing.  The state of
+ *  each iteration, including the positions in the settle order's heap,
+ *  is kept in a SearchSpace from the pool of the thread that creates it,
+ *  which is returned when the iteration is exhausted or becomes
+ *  unreachable, so it is proportional to the part of the graph
+ *  explored.  The breadth-first and depth-first orders are those of
+ *  BreadthFirstTraversal and DepthFirstTraversal.  The graph must not
+ *  change while an iteration is in use.
+ *  @author esun
+ */
+public class Traversals {
+
+    /** Not instantiable. */
+    private Traversals() {
+    }
+
+    /** Returns the vertices of G reachable from SOURCE, in breadth-first
+     *  order. */
+    public static Iteration<Integer> breadthFirst(Graph G, int source) {
+        return intBreadthFirst(G, source);
+    }
+
+    /** Returns the vertices of G reachable from SOURCE, in breadth-first
+     *  order, as an IntIteration. */
+    public static IntIteration intBreadthFirst(Graph G, int source) {
+        return new BreadthFirst(G, source);
+    }
+
+    /** Returns the vertices of G reachable from SOURCE, in depth-first
+     *  preorder. */
+    public static Iteration<Integer> preorder(Graph G, int source) {
+        return intPreorder(G, source);
+    }
+
+    /** Returns the vertices of G reachable from SOURCE, in depth-first
+     *  preorder, as an IntIteration. */
+    public static IntIteration intPreorder(Graph G, int source) {
+        return new DepthFirst(G, source, false);
+    }
+
+    /** Returns the vertices of G reachable from SOURCE, in depth-first
+     *  postorder. */
+    public static Iteration<Integer> postorder(Graph G, int source) {
+        return intPostorder(G, source);
+    }
+
+    /** Returns the vertices of G reachable from SOURCE, in depth-first
+     *  postorder, as an IntIteration. */
+    public static IntIteration intPostorder(Graph G, int source) {
+        return new DepthFirst(G, source, true);
+    }
+
+    /** Returns the vertices of G reachable from SOURCE in the order of
+     *  their distances from SOURCE, where edge weights are given by
+     *  WEIGHTS, as Dijkstra's algorithm settles them. */
+    public static Iteration<Integer> settleOrder(Graph G,
+                                                 EdgeWeighting weights,
+                                                 int source) {
+        return intSettleOrder(G, weights, source);
+    }
+
+    /** Returns the vertices of G reachable from SOURCE in the order of
+     *  their distances from SOURCE, where edge weights are given by
+     *  WEIGHTS, as Dijkstra's algorithm settles them.  The distance of
+     *  the vertex last returned is available from the result's distance
+     *  method. */
+    public static SettleOrder intSettleOrder(Graph G, EdgeWeighting weights,
+                                             int source) {
+        return new SettleOrder(G, weights, source);
+    }
+
+    /** Vertices in the order Dijkstra's algorithm settles them.  Ties are
+     *  settled smallest vertex first. */
+    public static class SettleOrder extends IntIteration {
+
+        /** The vertices of G reachable from SOURCE, with edge weights
+         *  WEIGHTS, in settle order. */
+        private SettleOrder(Graph G, EdgeWeighting weights, int source) {
+            this(G, weights, source, Double.POSITIVE_INFINITY);
+        }
+
+        /** The vertices of G within distance LIMIT of SOURCE, with edge
+         *  weights WEIGHTS, in settle order.  Vertices farther away are
+         *  never added to the fringe. */
+        SettleOrder(Graph G, EdgeWeighting weights, int source,
+                    double limit) {
+            G.checkMyVertex(source);
+            _G = G;
+            _weights = weights;
+            _limit = limit;
+            _space = SearchSpace.lease(this, G.maxVertex() + 1, 1);
+            _space.setDefault(DIST, Double.POSITIVE_INFINITY);
+            _space.setDouble(DIST, source, 0.0);
+            _fringe = new DaryHeap(_space, POSITION);
+            _fringe.add(source, 0.0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (_last != 0) {
+                relax(_last);
+                _last = 0;
+                if (_fringe.isEmpty()) {
+                    _space.release();
+                }
+            }
+            return !_fringe.isEmpty();
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            _last = _fringe.removeMin();
+            _distance = _space.getDouble(DIST, _last);
+            _space.setFlag(SETTLED, _last);
+            return _last;
+        }
+
+        /** Returns the distance from the source of the vertex last
+         *  returned by nextInt or next.  Before the first, returns 0. */
+        public double distance() {
+            return _distance;
+        }
+
+        /** Add the unsettled successors of U to the fringe, or lower
+         *  their distances, as paths through U require. */
+        private void relax(int u) {
+            for (IntIteration it = _G.intSuccessors(u); it.hasNext(); ) {
+                int w = it.nextInt();
+                if (!_space.flag(SETTLED, w)) {
+                    double d = _distance + _weights.getWeight(u, w);
+                    if (d <= _limit && d < _space.getDouble(DIST, w)) {
+                        _space.setDouble(DIST, w, d);
+                        _fringe.add(w, d);
+                    }
+                }
+            }
+        }
+
+        /** The graph searched. */
+        private final Graph _G;
+        /** Its edge weights. */
+        private final EdgeWeighting _weights;
+        /** Largest distance of a vertex to be returned. */
+        private final double _limit;
+        /** Tentative distances (DIST), settled vertices (SETTLED), and
+         *  positions in _fringe (POSITION). */
+        private final SearchSpace _space;
+        /** Reached vertices not yet settled. */
+        private final DaryHeap _fringe;
+        /** The vertex last returned, if its edges have not yet been
+         *  relaxed, and otherwise 0. */
+        private int _last;
+        /** Distance of the vertex last returned. */
+        private double _distance;
+
+        /** Double slot of _space holding tentative distances. */
+        private static final int DIST = 0;
+        /** Flag of _space marking settled vertices. */
+        private static final int SETTLED = 0;
+        /** Int slot of _space holding positions in _fringe. */
+        private static final int POSITION = 0;
+    }
+
+    /** Vertices in breadth-first order. */
+    private static class BreadthFirst extends IntIteration {
+
+        /** The vertices of G reachable from SOURCE, breadth first. */
+        BreadthFirst(Graph G, int source) {
+            G.checkMyVertex(source);
+            _G = G;
+            _space = SearchSpace.lease(this, G.maxVertex() + 1, 0);
+            _space.setFlag(MARKED, source);
+            _queue.addInt(source);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (_last != 0) {
+                for (IntIteration it = _G.intSuccessors(_last);
+                     it.hasNext(); ) {
+                    int w = it.nextInt();
+                    if (!_space.flag(MARKED, w)) {
+                        _space.setFlag(MARKED, w);
+                        _queue.addInt(w);
+                    }
+                }
+                _last = 0;
+                if (_queue.isEmpty()) {
+                    _space.release();
+                }
+            }
+            return !_queue.isEmpty();
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            _last = _queue.removeInt();
+            return _last;
+        }
+
+        /** The graph traversed. */
+        private final Graph _G;
+        /** Vertices reached (MARKED). */
+        private final SearchSpace _space;
+        /** Vertices reached and not yet returned. */
+        private final IntDeque _queue = new IntDeque(false);
+        /** The vertex last returned, if its successors have not yet been
+         *  queued, and otherwise 0. */
+        private int _last;
+    }
+
+    /** Vertices in depth-first preorder or postorder. */
+    private static class DepthFirst extends IntIteration {
+
+        /** The vertices of G reachable from SOURCE, depth first, in
+         *  postorder if POST and otherwise in preorder. */
+        DepthFirst(Graph G, int source, boolean post) {
+            G.checkMyVertex(source);
+            _G = G;
+            _post = post;
+            _space = SearchSpace.lease(this, G.maxVertex() + 1, 0);
+            _source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (_next == 0 && _space != null) {
+                _next = advance();
+                if (_next == 0) {
+                    _space.release();
+                    _space = null;
+                }
+            }
+            return _next != 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int v = _next;
+            _next = 0;
+            return v;
+        }
+
+        /** Continue the traversal to the next vertex to be returned, and
+         *  return it, or 0 if there are no more. */
+        private int advance() {
+            if (_source != 0) {
+                int v = _source;
+                _source = 0;
+                enter(v);
+                if (!_post) {
+                    return v;
+                }
+            }
+            while (_stack.size() > 0) {
+                int top = _stack.size() - 1;
+                IntIteration cursor = _cursors.get(top);
+                if (cursor.hasNext()) {
+                    int v = cursor.nextInt();
+                    if (!_space.flag(MARKED, v)) {
+                        enter(v);
+                        if (!_post) {
+                            return v;
+                        }
+                    }
+                } else {
+                    int u = _stack.get(top);
+                    _stack.removeAt(top);
+                    _cursors.remove(top);
+                    if (_post) {
+                        return u;
+                    }
+                }
+            }
+            return 0;
+        }
+
+        /** Mark V and push a frame for it. */
+        private void enter(int v) {
+            _space.setFlag(MARKED, v);
+            _stack.add(v);
+            _cursors.add(_G.intSuccessors(v));
+        }
+
+        /** The graph traversed. */
+        private final Graph _G;
+        /** True iff I return vertices in postorder. */
+        private final boolean _post;
+        /** Vertices reached (MARKED), or null once I am exhausted. */
+        private SearchSpace _space;
+        /** The source, until it has been entered, and then 0. */
+        private int _source;
+        /** The next vertex to return, or 0 if not yet found. */
+        private int _next;
+        /** Vertices of the current frames, innermost last. */
+        private final IntList _stack = new IntList();
+        /** Successor cursors of the current frames, parallel to _stack. */
+        private final ArrayList<IntIteration> _cursors = new ArrayList<>();
+    }
+
+    /** Flag of a SearchSpace marking reached vertices. */
+    private static final int MARKED = 0;
+}
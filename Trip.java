@@ -1,16 +1,33 @@
 package trip;
 
+import graph.BidirectionalShortestPaths;
+import graph.ContractionHierarchy;
+import graph.FrozenGraph;
+import graph.Graph;
 import graph.LabeledGraph;
+import graph.Landmarks;
 import graph.UndirectedGraph;
-import graph.SimpleShortestPaths;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 import java.util.InputMismatchException;
 import java.util.NoSuchElementException;
 import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 
@@ -22,14 +39,37 @@ import static trip.Main.error;
  */
 class Trip {
 
-    /** Read map file named NAME into out map graph. */
+    /** Read map file named NAME into out map graph.  The file may be
+     *  either a text map or a map compiled by compileMap. */
     void readMap(String name) {
+        if (_compiled != null) {
+            error("cannot add to a compiled map");
+        }
+        if (CompiledMap.isCompiled(name)) {
+            if (_map.vertexSize() > 0) {
+                error("cannot add a compiled map to other map data");
+            }
+            _compiled = CompiledMap.load(name);
+            mapChanged();
+            return;
+        }
+        if (_map.vertexSize() == 0) {
+            MapLoader loaded = MapLoader.load(name);
+            if (loaded != null) {
+                addAll(loaded);
+                return;
+            }
+        }
+        readText(name);
+    }
+
+    /** Read the text map file named NAME into my map one entry at a
+     *  time, reporting any error in it.  This is the reader of which
+     *  MapLoader's parallel reader is a faster special case. */
+    void readText(String name) {
         int n;
         n = 0;
-
-        Scanner inp;
-        try {
-            inp = new Scanner(new File(name));
+        try (MapTokenizer inp = new MapTokenizer(new File(name))) {
             while (inp.hasNext()) {
                 n += 1;
                 switch (inp.next()) {
@@ -57,35 +97,182 @@ class Trip {
         } catch (FileNotFoundException excp) {
             trip.Main.error("File Not Found %s: %s", excp.getMessage());
             return;
+        } catch (IOException | UncheckedIOException excp) {
+            error("could not read map %s: %s", name, excp.getMessage());
+            return;
         }
     }
 
     /** Produce a report on the standard output of a shortest journey from
-     *  DESTS.get(0), then DESTS.get(1), .... */
+     *  DESTS.get(0), then DESTS.get(1), ....  The legs of the journey are
+     *  searched for concurrently on LEG_SEARCHERS, each search using only
+     *  its own state, and reported in order as they complete. */
     void makeTrip(List<String> dests) {
+        makeTrip(dests, System.out);
+    }
+
+    /** Produce a report on OUT of a shortest journey from DESTS.get(0),
+     *  then DESTS.get(1), ..., as for makeTrip(DESTS).  May be called
+     *  from several threads at once, once the map has been read. */
+    void makeTrip(List<String> dests, PrintStream out) {
         if (dests.size() < 2) {
             error("must have at least two locations for a trip");
         }
 
-        System.out.printf("From %s:%n%n", dests.get(0));
+        int bad;
+        for (bad = 0; bad < dests.size(); bad += 1) {
+            if (vertex(dests.get(bad)) == 0) {
+                break;
+            }
+        }
+        searchGraph();
+        ArrayList<Future<List<Integer>>> legs = new ArrayList<>();
+        for (int i = 1; i < Math.max(bad, 1); i += 1) {
+            int from = vertex(dests.get(i - 1)),
+                to = vertex(dests.get(i));
+            legs.add(LEG_SEARCHERS.submit(() -> findPath(from, to)));
+        }
+
+        out.printf("From %s:%n%n", dests.get(0));
         int step;
         step = 1;
 
         for (int i = 1; i < dests.size(); i += 1) {
-            Integer
-                from = _sites.get(dests.get(i - 1)),
-                to = _sites.get(dests.get(i));
-            if (from == null) {
-                error("No location named %s", dests.get(i - 1));
-            } else if (to == null) {
-                error("No location named %s", dests.get(i));
+            if (i == Math.max(bad, 1)) {
+                for (Future<List<Integer>> leg : legs) {
+                    leg.cancel(true);
+                }
+                error("No location named %s", dests.get(bad));
+            }
+            List<Integer> segment = result(legs.get(i - 1));
+            step = reportSegment(step, vertex(dests.get(i - 1)),
+                                 segment, out);
+        }
+
+    }
+
+    /** Returns the path computed by LEG, rethrowing any exception thrown
+     *  while computing it. */
+    private static List<Integer> result(Future<List<Integer>> leg) {
+        try {
+            return leg.get();
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted during search");
+        }
+    }
+
+    /** Returns a shortest path from vertex FROM to vertex TO, as a list
+     *  of vertices starting with FROM, or null if there is none.  Paths
+     *  are kept in _routes. */
+    private List<Integer> findPath(int from, int to) {
+        int[] path = _routes.get(from, to, () -> search(from, to)).path();
+        if (path == null) {
+            return null;
+        }
+        ArrayList<Integer> result = new ArrayList<>(path.length);
+        for (int v : path) {
+            result.add(v);
+        }
+        return result;
+    }
+
+    /** Returns the route from vertex FROM to vertex TO found by searching
+     *  the map. */
+    private RouteCache.Route search(int from, int to) {
+        List<Integer> path;
+        if (_hierarchy != null) {
+            path = _hierarchy.path(from, to);
+        } else {
+            path = new TripPlan(from, to).pathTo(to);
+        }
+        if (path == null) {
+            return new RouteCache.Route(null, Double.POSITIVE_INFINITY);
+        }
+        int[] vertices = new int[path.size()];
+        double distance = 0.0;
+        int k = 0;
+        for (int v : path) {
+            if (k > 0) {
+                distance += roadLength(vertices[k - 1], v);
             }
-            TripPlan plan = new TripPlan(from, to);
-            plan.setPaths();
-            List<Integer> segment = plan.pathTo(to);
-            step = reportSegment(step, from, segment);
+            vertices[k] = v;
+            k += 1;
         }
+        return new RouteCache.Route(vertices, distance);
+    }
 
+    /** Use a contraction hierarchy of the current map to find trips,
+     *  reading it from the file named NAME if that holds one built from
+     *  the same roads and lengths, and otherwise building it and writing
+     *  it to NAME. */
+    void useHierarchy(String name) {
+        File file = new File(name);
+        _hierarchy = null;
+        _routes.clear();
+        if (file.isFile()) {
+            try (DataInputStream inp = new DataInputStream(
+                     new BufferedInputStream(new FileInputStream(file)))) {
+                ContractionHierarchy hierarchy =
+                    ContractionHierarchy.read(inp);
+                if (hierarchy.matches(searchGraph(), this::roadLength)) {
+                    _hierarchy = hierarchy;
+                }
+            } catch (IOException excp) {
+                _hierarchy = null;
+            }
+        }
+        if (_hierarchy == null) {
+            ContractionHierarchy hierarchy =
+                new ContractionHierarchy(searchGraph(),
+                                         this::roadLength);
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(file)))) {
+                hierarchy.write(out);
+            } catch (IOException excp) {
+                error("could not write %s: %s", name, excp.getMessage());
+            }
+            _hierarchy = hierarchy;
+        }
+    }
+
+    /** Use landmark lower bounds in finding trips, reading the landmark
+     *  tables from the file named NAME if that holds tables for the same
+     *  roads and lengths, and otherwise computing them and writing them
+     *  to NAME. */
+    void useLandmarks(String name) {
+        File file = new File(name);
+        _landmarks = null;
+        _routes.clear();
+        if (file.isFile()) {
+            try (DataInputStream inp = new DataInputStream(
+                     new BufferedInputStream(new FileInputStream(file)))) {
+                Landmarks landmarks = Landmarks.read(inp);
+                if (landmarks.matches(searchGraph(), this::roadLength)) {
+                    _landmarks = landmarks;
+                }
+            } catch (IOException excp) {
+                _landmarks = null;
+            }
+        }
+        if (_landmarks == null) {
+            Landmarks landmarks =
+                new Landmarks(searchGraph(),
+                              this::roadLength,
+                              LANDMARKS);
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(file)))) {
+                landmarks.write(out);
+            } catch (IOException excp) {
+                error("could not write %s: %s", name, excp.getMessage());
+            }
+            _landmarks = landmarks;
+        }
     }
 
     /** Print out a written description of the location sequence SEGMENT,
@@ -103,6 +290,15 @@ class Trip {
      *  Adjacent roads with the same name and direction are combined.
      *  */
     int reportSegment(int seq, int from, List<Integer> segment) {
+        return reportSegment(seq, from, segment, System.out);
+    }
+
+    /** Print out on OUT a written description of the location sequence
+     *  SEGMENT, starting at FROM and numbering lines from SEQ, as for
+     *  reportSegment(SEQ, FROM, SEGMENT).  Returns the next sequence
+     *  number. */
+    int reportSegment(int seq, int from, List<Integer> segment,
+                      PrintStream out) {
 
         if (segment == null) {
             return seq;
@@ -113,10 +309,10 @@ class Trip {
         for (int i = 0; i < segment.size() - 1; i++) {
             int u = segment.get(i);
             int v = segment.get(i + 1);
-            Road r = _map.getLabel(u, v);
+            Road r = road(u, v);
 
             Direction direction = r.direction();
-            if (_start.get(r) != u) {
+            if (roadStart(u, v) != u) {
                 direction = direction.reverse();
             }
 
@@ -124,9 +320,9 @@ class Trip {
             for (int j = i + 1; j < segment.size() - 1; j++) {
                 int u2 = segment.get(j);
                 int v2 = segment.get(j + 1);
-                Road r2 = _map.getLabel(u2, v2);
+                Road r2 = road(u2, v2);
                 Direction direction2 = r2.direction();
-                if (_start.get(r2) != u2) {
+                if (roadStart(u2, v2) != u2) {
                     direction2 = direction2.reverse();
                 }
 
@@ -142,15 +338,15 @@ class Trip {
                 }
             }
 
-            System.out.print(seq + ". Take " + r.toString()
+            out.print(seq + ". Take " + r.toString()
                     + " " + direction.fullName() + " for "
                     + round(lengthSum, 1) + " miles");
             seq++;
             if (i == segment.size() - 2) {
-                String dest = _map.getLabel(v).toString();
-                System.out.print(" to " + dest);
+                String dest = location(v).toString();
+                out.print(" to " + dest);
             }
-            System.out.println(".");
+            out.println(".");
         }
         return seq;
     }
@@ -173,6 +369,25 @@ class Trip {
         int v = _map.add(new Location(name, x, y));
         int a = 0;
         _sites.put(name, v);
+        mapChanged();
+    }
+
+    /** Add the locations and then the roads of LOADED to the map, each
+     *  in file order, giving the same vertex numbers and edges as
+     *  reading its entries one at a time. */
+    private void addAll(MapLoader loaded) {
+        int[] vertex = new int[loaded.locationSize()];
+        for (int k = 0; k < vertex.length; k += 1) {
+            vertex[k] = _map.add(loaded.location(k));
+            _sites.put(loaded.locationName(k), vertex[k]);
+        }
+        for (int k = 0; k < loaded.roadSize(); k += 1) {
+            Road lab = loaded.road(k);
+            int v0 = vertex[loaded.roadFrom(k)];
+            _map.add(v0, vertex[loaded.roadTo(k)], lab);
+            _start.put(lab, v0);
+        }
+        mapChanged();
     }
 
     /** Add a stretch of road named NAME from the Location named FROM
@@ -193,6 +408,99 @@ class Trip {
         Road lab = new Road(name, dir, length);
         _map.add(v0, v1, lab);
         _start.put(lab, v0);
+        mapChanged();
+    }
+
+    /** Write the current map, which must have been read from a text map,
+     *  to the file named NAME in compiled form. */
+    void compileMap(String name) {
+        if (_compiled != null) {
+            error("map is already compiled");
+        }
+        CompiledMap.Compiler compiler =
+            new CompiledMap.Compiler(_map.maxVertex(), _map.edgeSize());
+        try {
+            for (int v : _map.vertices()) {
+                Location loc = _map.getLabel(v);
+                compiler.location(v, loc.toString(), loc.x(), loc.y());
+            }
+            for (int u : _map.vertices()) {
+                for (int v : _map.successors(u)) {
+                    Road r = _map.getLabel(u, v);
+                    compiler.edge(u, v, r, _start.get(r));
+                }
+            }
+            compiler.write(name);
+        } catch (IOException excp) {
+            error("could not write %s: %s", name, excp.getMessage());
+        }
+    }
+
+    /** Returns the vertex of the location named NAME, or 0 if there is
+     *  none. */
+    private int vertex(String name) {
+        if (_compiled != null) {
+            return _compiled.find(name);
+        }
+        Integer v = _sites.get(name);
+        return v == null ? 0 : v;
+    }
+
+    /** Returns the Location of vertex V. */
+    private Location location(int v) {
+        return _compiled != null ? _compiled.location(v) : _map.getLabel(v);
+    }
+
+    /** Returns the straight-line distance between vertices U and V. */
+    private double dist(int u, int v) {
+        if (_compiled != null) {
+            return _compiled.dist(u, v);
+        }
+        return _map.getLabel(u).dist(_map.getLabel(v));
+    }
+
+    /** Returns the Road between vertices U and V. */
+    private Road road(int u, int v) {
+        return _compiled != null ? _compiled.road(u, v) : _map.getLabel(u, v);
+    }
+
+    /** Returns the vertex at which the Road between vertices U and V
+     *  starts. */
+    private int roadStart(int u, int v) {
+        if (_compiled != null) {
+            return _compiled.roadStart(u, v);
+        }
+        return _start.get(_map.getLabel(u, v));
+    }
+
+    /** Returns the length of the Road between vertices U and V. */
+    private double roadLength(int u, int v) {
+        if (_compiled != null) {
+            return _compiled.roadLength(u, v);
+        }
+        return _map.getLabel(u, v).length();
+    }
+
+    /** Discard everything derived from _map, after a change to it. */
+    private void mapChanged() {
+        _frozen = null;
+        _hierarchy = null;
+        _landmarks = null;
+        _routes.clear();
+    }
+
+    /** Returns a read-only snapshot of _map's structure for searching,
+     *  taken after the last change to _map.  Its edge ids are those of
+     *  _map, so Road labels may still be fetched from _map.  For a
+     *  compiled map, returns the compiled map's own graph. */
+    private synchronized Graph searchGraph() {
+        if (_compiled != null) {
+            return _compiled.graph();
+        }
+        if (_frozen == null) {
+            _frozen = new FrozenGraph(_map);
+        }
+        return _frozen;
     }
 
     /** Starting vertex ID of road. */
@@ -201,6 +509,32 @@ class Trip {
     private RoadMap _map = new RoadMap();
     /** Mapping of Location names to corresponding map vertices. */
     private HashMap<String, Integer> _sites = new HashMap<>();
+    /** Snapshot of _map used for searching, or null if not yet taken. */
+    private FrozenGraph _frozen;
+    /** Contraction hierarchy of _map used for searching, or null if
+     *  trips are found by searching _map directly. */
+    private ContractionHierarchy _hierarchy;
+    /** Landmark tables for _map used to guide searches, or null. */
+    private Landmarks _landmarks;
+    /** The compiled map read by readMap, which then replaces _map,
+     *  _sites, and _start, or null if the map was read from text. */
+    private CompiledMap _compiled;
+    /** Recently found routes in _map. */
+    private final RouteCache _routes = new RouteCache(ROUTE_CACHE_SIZE);
+
+    /** Largest number of routes kept in _routes. */
+    private static final int ROUTE_CACHE_SIZE = 4096;
+    /** Number of landmarks computed by useLandmarks. */
+    private static final int LANDMARKS = 16;
+    /** Threads that search for the legs of trips, one per processor.  The
+     *  threads are daemons, so they do not keep the program running. */
+    private static final ExecutorService LEG_SEARCHERS =
+        Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r, "trip-leg");
+                t.setDaemon(true);
+                return t;
+            });
 
     /** A labeled directed graph of Locations whose edges are labeled by
      *  Roads. */
@@ -211,26 +545,34 @@ class Trip {
         }
     }
 
-    /** Paths in _map from a given location. */
-    private class TripPlan extends SimpleShortestPaths {
+    /** Paths in _map from a given location.  Without landmarks, the path
+     *  to the destination is found by searching from both ends at once;
+     *  with them, by an A* search guided by the better of the landmark
+     *  and straight-line bounds. */
+    private class TripPlan extends BidirectionalShortestPaths {
         /** A plan for travel from START to DEST according to _map. */
         TripPlan(int start, int dest) {
-            super(_map, start, dest);
-            _finalLocation = _map.getLabel(dest);
+            super(searchGraph(), start, dest);
         }
 
         @Override
         protected double getWeight(int u, int v) {
-            return _map.getLabel(u, v).length();
+            return roadLength(u, v);
         }
 
         @Override
-        protected double estimatedDistance(int v) {
-            return 0.0;
+        protected boolean searchBothWays() {
+            return _landmarks == null;
         }
 
-        /** Location of the destination. */
-        private final Location _finalLocation;
+        @Override
+        protected double estimatedDistance(int v) {
+            double dist = dist(v, getDest());
+            if (_landmarks != null) {
+                dist = Math.max(dist, _landmarks.lowerBound(v, getDest()));
+            }
+            return dist;
+        }
 
     }
 
@@ -5,8 +5,34 @@ package trip;
  * may not be part of your trip package per se (that is, it must be
  * possible to remove them and still have your package work). */
 
+import graph.Compaction;
+import graph.DirectedGraph;
+import graph.Graph;
+import graph.LabeledGraph;
 import org.junit.Test;
 import ucb.junit.textui;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.function.Supplier;
 import static org.junit.Assert.*;
 
 /** Unit tests for the trip package. */
@@ -21,4 +47,558 @@ public class UnitTest {
     public void dummyTest() {
     }
 
+    @Test
+    public void testRouteCache() throws InterruptedException {
+        RouteCache cache = new RouteCache(2);
+        int[] searches = new int[1];
+        Supplier<RouteCache.Route> search = () -> {
+            synchronized (searches) {
+                searches[0] += 1;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException excp) {
+                throw new IllegalStateException(excp);
+            }
+            return new RouteCache.Route(new int[] { 1, 2 }, 3.0);
+        };
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i += 1) {
+            threads[i] = new Thread(() -> cache.get(1, 2, search));
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(1, searches[0]);
+        assertEquals(3.0, cache.get(1, 2, search).distance(), 0);
+        cache.get(2, 3, search);
+        cache.get(1, 2, search);
+        cache.get(3, 4, search);
+        assertEquals(3, searches[0]);
+        assertEquals(2, cache.size());
+        cache.get(1, 2, search);
+        assertEquals(3, searches[0]);
+        cache.get(2, 3, search);
+        assertEquals(4, searches[0]);
+        cache.clear();
+        assertEquals(0, cache.size());
+        cache.get(1, 2, search);
+        assertEquals(5, searches[0]);
+    }
+
+    @Test
+    public void testCompaction() {
+        LabeledGraph<String, Integer> g =
+            new LabeledGraph<>(new DirectedGraph());
+        for (int v = 1; v <= 10; v += 1) {
+            g.add();
+        }
+        for (int v = 1; v < 10; v += 1) {
+            g.add(v, v + 1, v);
+        }
+        for (int v = 1; v < 9; v += 2) {
+            g.remove(v, v + 1);
+        }
+        Compaction.compact(g);
+        assertEquals(5, g.edgeSize());
+        for (int v = 2; v < 10; v += 2) {
+            assertEquals((Integer) v, g.getLabel(v, v + 1));
+        }
+        assertEquals((Integer) 9, g.getLabel(9, 10));
+        assertEquals(6, g.add(1, 3, 13));
+        assertEquals((Integer) 13, g.getLabel(1, 3));
+    }
+
+    @Test
+    public void testMapTokenizer() {
+        List<String> tokens = new ArrayList<>();
+        String[] edges = {
+            "0", "-0", "+0", "1.5", "-2.25", "+3", "007", "1e10", "1E-5",
+            "2.5e+3", ".5", "5.", "-.5", "0.1", "0.30000000000000004",
+            "3.141592653589793238462643383279",
+            "123456789012345678901234567890",
+            "0.000000000000000000000000000001234567890123456789",
+            "1e308", "1.7976931348623157e308", "1e309", "4.9e-324",
+            "2e-324", "1e-400", "2.2250738585072014E-308", "9007199254740993",
+            "0x1p3", "0x1.8p1", "NaN", "Infinity", "-Infinity", "1,234.5",
+            "1,234", "12,34", "e5", "1e", "1e+", "--1", "1.2.3", ".", "-",
+            "abc", "1d", "1f", "Loc_1", "\u00e9t\u00e9",
+        };
+        tokens.addAll(List.of(edges));
+        Random rand = new Random(18);
+        for (int i = 0; i < 2000; i += 1) {
+            StringBuilder t = new StringBuilder();
+            if (rand.nextBoolean()) {
+                t.append(rand.nextBoolean() ? '-' : '+');
+            }
+            int whole = rand.nextInt(25), frac = rand.nextInt(25);
+            for (int k = 0; k < whole; k += 1) {
+                t.append((char) ('0' + rand.nextInt(10)));
+            }
+            if (frac > 0 || whole == 0) {
+                t.append('.');
+                for (int k = 0; k <= frac; k += 1) {
+                    t.append((char) ('0' + rand.nextInt(10)));
+                }
+            }
+            if (rand.nextInt(3) == 0) {
+                t.append(rand.nextBoolean() ? 'e' : 'E');
+                t.append(rand.nextInt(3) == 0 ? "-" : "");
+                t.append(rand.nextInt(330));
+            }
+            tokens.add(t.toString());
+        }
+
+        String text = String.join(" \t\n", tokens) + "\n";
+        MapTokenizer inp =
+            new MapTokenizer(ByteBuffer.wrap(text.getBytes(StandardCharsets
+                                                           .UTF_8)));
+        Scanner ref = new Scanner(text);
+        for (int i = 0; i < tokens.size(); i += 1) {
+            assertTrue(inp.hasNext());
+            if (ref.hasNextDouble()) {
+                double expected = ref.nextDouble();
+                assertEquals(tokens.get(i), Double.doubleToLongBits(expected),
+                             Double.doubleToLongBits(inp.nextDouble()));
+            } else {
+                try {
+                    inp.nextDouble();
+                    fail("accepted " + tokens.get(i));
+                } catch (InputMismatchException excp) {
+                    assertEquals(ref.next(), inp.next());
+                }
+            }
+            assertEquals(i, inp.line());
+        }
+        assertFalse(inp.hasNext());
+        assertFalse(ref.hasNext());
+    }
+
+    @Test
+    public void testReadMapErrors() throws IOException {
+        assertEquals("bad entry #2",
+                     readMapError("L A 1 2\nL B x 3\nL C 4 5\n"));
+        assertEquals("bad entry #3",
+                     readMapError("L A 1 2\nL B 3 4\nR A Main far NS B\n"));
+        assertEquals("entry incomplete at end of file",
+                     readMapError("L A 1 2\nL B 3 4\nR A Main 5 NS\n"));
+        assertEquals("entry incomplete at end of file",
+                     readMapError("L A 1 2\nL B 3"));
+        assertEquals("map entry #2: unknown type",
+                     readMapError("L A 1 2\nX B 3 4\n"));
+        assertEquals(null, readMapError("L A 1 2\nL B 3 4\nR A Main 5 NS B"));
+    }
+
+    @Test
+    public void testMapLoader() throws IOException {
+        for (int seed = 1; seed <= 3; seed += 1) {
+            String text = randomMap(seed, 4000 * seed, 6000 * seed);
+            File file = mapFile(text);
+            assertNotNull(MapLoader.load(file.getPath()));
+            assertTrue(Arrays.equals(compiled(file, false),
+                                     compiled(file, true)));
+            file.delete();
+        }
+        String text = randomMap(4, 15000, 25000);
+        assertTrue(text.length() > 4 * (1 << 18));
+        String[] fallbacks = {
+            "L Loc_7 1.0 2.0\n",
+            "R Loc_1 Back 3.0 NS Later\nL Later 1.0 2.0\n",
+            "L Two_1 1.0 2.0 L Two_2 3.0 4.0\nR Two_1 Pair 2.5 EW Two_2\n",
+        };
+        String[] errors = {
+            "multiple entries for Loc_7", "location Later not defined", null,
+        };
+        for (int i = 0; i < fallbacks.length; i += 1) {
+            String extra = fallbacks[i];
+            int middle = text.indexOf('\n', text.length() / 2) + 1;
+            File file = mapFile(text.substring(0, middle) + extra
+                                + text.substring(middle));
+            assertNull(MapLoader.load(file.getPath()));
+            String parallel = null, serial = null;
+            byte[] parallelMap = null, serialMap = null;
+            try {
+                parallelMap = compiled(file, false);
+            } catch (IllegalArgumentException excp) {
+                parallel = excp.getMessage();
+            }
+            try {
+                serialMap = compiled(file, true);
+            } catch (IllegalArgumentException excp) {
+                serial = excp.getMessage();
+            }
+            assertEquals(errors[i], serial);
+            assertEquals(serial, parallel);
+            assertEquals(serial == null, serialMap != null);
+            assertTrue(Arrays.equals(serialMap, parallelMap));
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCompiledMap() throws IOException {
+        String[][] locations = {
+            { "Home", "0.0", "0.0" }, { "Work", "3.0", "4.0" },
+            { "Caf\u00e9", "6.0", "0.0" }, { "Park", "-2.5", "1.5" },
+            { "Island", "9.0", "9.0" },
+        };
+        String[][] roads = {
+            { "Home", "Main", "5.0", "NS", "Work" },
+            { "Work", "Elm", "5.5", "EW", "Caf\u00e9" },
+            { "Caf\u00e9", "Main", "6.25", "WE", "Home" },
+            { "Park", "Oak", "3.0", "SN", "Home" },
+        };
+        StringBuilder text = new StringBuilder();
+        for (String[] loc : locations) {
+            text.append(String.format("L %s %s %s%n", (Object[]) loc));
+        }
+        for (String[] road : roads) {
+            text.append(String.format("R %s %s %s %s %s%n",
+                                      (Object[]) road));
+        }
+        File file = mapFile(text.toString());
+        File bin = File.createTempFile("map", ".bin");
+        bin.deleteOnExit();
+        byte[] data = compiled(file, true);
+        Files.write(bin.toPath(), data);
+        file.delete();
+
+        assertTrue(CompiledMap.isCompiled(bin.getPath()));
+        CompiledMap map = CompiledMap.load(bin.getPath());
+        Graph g = map.graph();
+        assertEquals(locations.length, g.vertexSize());
+        assertEquals(roads.length, g.edgeSize());
+        assertEquals(0, map.find("Nowhere"));
+        int[] vertex = new int[locations.length];
+        for (int i = 0; i < locations.length; i += 1) {
+            vertex[i] = map.find(locations[i][0]);
+            assertTrue(g.contains(vertex[i]));
+            Location loc = map.location(vertex[i]);
+            assertEquals(locations[i][0], loc.toString());
+            assertEquals(Double.parseDouble(locations[i][1]), loc.x(), 0.0);
+            assertEquals(Double.parseDouble(locations[i][2]), loc.y(), 0.0);
+            for (int j = 0; j < i; j += 1) {
+                assertTrue(vertex[i] != vertex[j]);
+            }
+        }
+        List<List<Integer>> neighbors = new ArrayList<>();
+        for (int i = 0; i < locations.length; i += 1) {
+            neighbors.add(new ArrayList<>());
+        }
+        for (String[] road : roads) {
+            int from = index(locations, road[0]),
+                to = index(locations, road[4]);
+            neighbors.get(from).add(vertex[to]);
+            neighbors.get(to).add(vertex[from]);
+            for (int[] uv : new int[][] { { vertex[from], vertex[to] },
+                                          { vertex[to], vertex[from] } }) {
+                Road r = map.road(uv[0], uv[1]);
+                assertEquals(road[1], r.toString());
+                assertEquals(Direction.valueOf(road[3]), r.direction());
+                assertEquals(Double.parseDouble(road[2]), r.length(), 0.0);
+                assertEquals(r.length(), map.roadLength(uv[0], uv[1]), 0.0);
+                assertEquals(vertex[from], map.roadStart(uv[0], uv[1]));
+                assertTrue(g.contains(uv[0], uv[1]));
+            }
+        }
+        for (int i = 0; i < locations.length; i += 1) {
+            List<Integer> succ = new ArrayList<>();
+            for (int v : g.successors(vertex[i])) {
+                succ.add(v);
+            }
+            succ.sort(null);
+            neighbors.get(i).sort(null);
+            assertEquals(neighbors.get(i), succ);
+            assertEquals(succ.size(), g.outDegree(vertex[i]));
+        }
+
+        int island = vertex[index(locations, "Island")];
+        assertFalse(g.contains(vertex[0], island));
+        try {
+            map.road(vertex[0], island);
+            fail("road to Island");
+        } catch (IllegalArgumentException excp) {
+            assertEquals(String.format("no road between vertices %d and %d",
+                                       vertex[0], island),
+                         excp.getMessage());
+        }
+
+        byte[][] corrupt = {
+            Arrays.copyOf(data, data.length - 1),
+            Arrays.copyOf(data, data.length + 1),
+            Arrays.copyOf(data, 9 * Integer.BYTES),
+        };
+        for (byte[] bad : corrupt) {
+            Files.write(bin.toPath(), bad);
+            try {
+                CompiledMap.load(bin.getPath());
+                fail("corrupt map loaded");
+            } catch (IllegalArgumentException excp) {
+                assertEquals("corrupt compiled map", excp.getMessage());
+            }
+        }
+        byte[] badSize = data.clone();
+        ByteBuffer.wrap(badSize).putInt(7 * Integer.BYTES, 3);
+        Files.write(bin.toPath(), badSize);
+        try {
+            CompiledMap.load(bin.getPath());
+            fail("bad index size loaded");
+        } catch (IllegalArgumentException excp) {
+            assertEquals("corrupt compiled map", excp.getMessage());
+        }
+        bin.delete();
+    }
+
+    @Test
+    public void testServer() throws Exception {
+        File file = mapFile("L A 0.0 0.0\nL B 3.0 4.0\nL C 6.0 0.0\n"
+                            + "R A Main 5.0 NS B\nR B Elm 5.5 EW C\n");
+        Trip trip = new Trip();
+        trip.readMap(file.getPath());
+        file.delete();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream report = new PrintStream(bytes, true, "UTF-8");
+        trip.makeTrip(Arrays.asList("A", "C"), report);
+        String expected = bytes.toString("UTF-8");
+
+        Server server = new Server(trip, 1, 1, 200, 2000);
+        ServerSocket listener =
+            new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve(listener);
+            } catch (IOException excp) {
+                throw new UncheckedIOException(excp);
+            }
+        });
+        serving.start();
+        try {
+            Socket first = connect(listener);
+            BufferedReader inp = reader(first);
+            PrintWriter out = writer(first);
+            out.println("A, C");
+            out.println();
+            out.println("A, Nowhere");
+            out.println("STATS");
+            out.flush();
+            assertEquals(expected + "OK", readReply(inp));
+            String error = readReply(inp);
+            assertTrue(error,
+                       error.endsWith("ERROR: No location named Nowhere"));
+            String stats = readReply(inp);
+            assertTrue(stats, stats.startsWith("trips: 2 "));
+            assertTrue(stats, stats.endsWith("OK"));
+
+            Socket waiting = connect(listener),
+                busy = connect(listener);
+            assertEquals("ERROR: server busy", reader(busy).readLine());
+            assertNull(reader(busy).readLine());
+            long start = System.nanoTime();
+            BufferedReader waitingInp = reader(waiting);
+            assertEquals("ERROR: server busy", waitingInp.readLine());
+            assertNull(waitingInp.readLine());
+            assertTrue(System.nanoTime() - start < 1_500_000_000L);
+            busy.close();
+            waiting.close();
+
+            assertEquals("ERROR: idle timeout", inp.readLine());
+            assertNull(inp.readLine());
+            first.close();
+
+            Socket last = connect(listener);
+            PrintWriter lastOut = writer(last);
+            lastOut.println("QUIT");
+            lastOut.flush();
+            assertNull(reader(last).readLine());
+            last.close();
+        } finally {
+            listener.close();
+            serving.join();
+        }
+    }
+
+    @Test
+    public void testMakeTrips() throws IOException {
+        File file = mapFile("L A 0.0 0.0\nL B 3.0 4.0\nL C 6.0 0.0\n"
+                            + "R A Main 5.0 NS B\nR B Elm 5.5 EW C\n");
+        Trip trip = new Trip();
+        trip.readMap(file.getPath());
+        file.delete();
+        String[] trips = { "A, C", "C, A", "B,C", "A, B, C" };
+        StringBuilder requests = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        int bad = 7;
+        for (int n = 1; n <= 500; n += 1) {
+            String request = n == bad ? "A, Nowhere" : trips[n % 4];
+            requests.append(request).append(n % 10 == 0 ? "\n  \n" : "\n");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PrintStream report = new PrintStream(bytes, true, "UTF-8");
+            try {
+                trip.makeTrip(Arrays.asList(Main.LISTSEP.split(request)),
+                              report);
+                assertTrue(n != bad);
+            } catch (IllegalArgumentException excp) {
+                assertEquals(bad, n);
+            }
+            if (n > 1) {
+                expected.append(System.lineSeparator());
+            }
+            expected.append(bytes.toString("UTF-8"));
+        }
+        File requestFile = mapFile(requests.toString());
+
+        PrintStream stdout = System.out, stderr = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(),
+            err = new ByteArrayOutputStream();
+        boolean ok;
+        try {
+            System.setOut(new PrintStream(out, true, "UTF-8"));
+            System.setErr(new PrintStream(err, true, "UTF-8"));
+            ok = Main.makeTrips(trip, requestFile.getPath());
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+            requestFile.delete();
+        }
+        assertFalse(ok);
+        assertEquals(expected.toString(), out.toString("UTF-8"));
+        assertEquals(String.format("trip: request #%d: "
+                                   + "No location named Nowhere%n", bad),
+                     err.toString("UTF-8"));
+
+        requestFile = mapFile("A, C\n\nC, A\n");
+        out.reset();
+        err.reset();
+        try {
+            System.setOut(new PrintStream(out, true, "UTF-8"));
+            System.setErr(new PrintStream(err, true, "UTF-8"));
+            ok = Main.makeTrips(trip, requestFile.getPath());
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+            requestFile.delete();
+        }
+        assertTrue(ok);
+        assertEquals("", err.toString("UTF-8"));
+        assertTrue(out.toString("UTF-8").contains(System.lineSeparator()
+                                                  + System.lineSeparator()
+                                                  + "From C:"));
+    }
+
+    /** Returns a new connection to LISTENER. */
+    private static Socket connect(ServerSocket listener) throws IOException {
+        Socket s = new Socket(listener.getInetAddress(),
+                              listener.getLocalPort());
+        s.setSoTimeout(10000);
+        return s;
+    }
+
+    /** Returns a reader for the input of S. */
+    private static BufferedReader reader(Socket s) throws IOException {
+        return new BufferedReader(new InputStreamReader(s.getInputStream(),
+                                                        StandardCharsets
+                                                        .UTF_8));
+    }
+
+    /** Returns a writer for the output of S. */
+    private static PrintWriter writer(Socket s) throws IOException {
+        return new PrintWriter(new OutputStreamWriter(s.getOutputStream(),
+                                                      StandardCharsets.UTF_8));
+    }
+
+    /** Returns the lines of the next reply from INP, up to and including
+     *  its "OK" or "ERROR" line, each line but the last followed by the
+     *  line separator. */
+    private static String readReply(BufferedReader inp) throws IOException {
+        StringBuilder reply = new StringBuilder();
+        while (true) {
+            String line = inp.readLine();
+            assertNotNull(line);
+            reply.append(line);
+            if (line.equals("OK") || line.startsWith("ERROR")) {
+                return reply.toString();
+            }
+            reply.append(System.lineSeparator());
+        }
+    }
+
+    /** Returns the index of the row of TABLE whose first entry is NAME. */
+    private static int index(String[][] table, String name) {
+        for (int i = 0; i < table.length; i += 1) {
+            if (table[i][0].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /** Returns the text of a random map with about LOCATIONS locations
+     *  and ROADS roads, entries mixed, chosen with random seed SEED.
+     *  Each road joins locations defined before it. */
+    private static String randomMap(int seed, int locations, int roads) {
+        Random rand = new Random(seed);
+        String[] dirs = { "NS", "SN", "EW", "WE" };
+        StringBuilder text = new StringBuilder();
+        int defined = 0;
+        for (int i = 0; i < locations + roads; i += 1) {
+            if (defined < 2 || rand.nextInt(locations + roads) < locations) {
+                text.append(String.format("L Loc_%d %.3f %.3f%n", defined,
+                                          rand.nextDouble() * 1000 - 500,
+                                          rand.nextDouble() * 1000 - 500));
+                defined += 1;
+            } else {
+                text.append(String.format("R Loc_%d Road_%d %.3f %s Loc_%d%n",
+                                          rand.nextInt(defined), i,
+                                          rand.nextDouble() * 50,
+                                          dirs[rand.nextInt(4)],
+                                          rand.nextInt(defined)));
+            }
+            if (rand.nextInt(50) == 0) {
+                text.append(rand.nextBoolean() ? "\n" : "   \t\n");
+            }
+        }
+        return text.toString();
+    }
+
+    /** Returns the compiled form of the text map in FILE, read by
+     *  Trip.readMap, or by the serial reader alone if SERIAL. */
+    private static byte[] compiled(File file, boolean serial)
+        throws IOException {
+        Trip trip = new Trip();
+        if (serial) {
+            trip.readText(file.getPath());
+        } else {
+            trip.readMap(file.getPath());
+        }
+        File out = File.createTempFile("map", ".bin");
+        out.deleteOnExit();
+        trip.compileMap(out.getPath());
+        byte[] result = Files.readAllBytes(out.toPath());
+        out.delete();
+        return result;
+    }
+
+    /** Returns the error message from reading a map whose text is TEXT,
+     *  or null if it is read without error. */
+    private static String readMapError(String text) throws IOException {
+        File file = mapFile(text);
+        try {
+            new Trip().readMap(file.getPath());
+            return null;
+        } catch (IllegalArgumentException excp) {
+            return excp.getMessage();
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Returns a new temporary file containing TEXT. */
+    private static File mapFile(String text) throws IOException {
+        File file = File.createTempFile("map", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
 }